@@ -14,6 +14,7 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-jdbc")
     implementation("com.alibaba.fastjson2:fastjson2:2.0.53")
     implementation("org.postgresql:postgresql:42.7.4")
+    implementation("com.github.luben:zstd-jni:1.5.6-6")  // 直接导入 .zst 压缩的 ndjson
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.postgresql:postgresql")  // 用于连接 PostgreSQL 数据库
@@ -23,11 +24,16 @@ dependencies {
     runtimeOnly("io.jsonwebtoken:jjwt-jackson:0.11.5") // 如果使用 JSON 序列化
     compileOnly ("org.projectlombok:lombok:1.18.24")  // Lombok 依赖
     annotationProcessor ("org.projectlombok:lombok:1.18.24")  // Lombok 注解处理器
+    testImplementation("org.springframework.boot:spring-boot-starter-test")
 }
     // 其他依赖
     // You may add any utility library you want to use, such as guava.
     // ORM libraries are prohibited in this project.
 
+tasks.test {
+    useJUnitPlatform()
+}
+
 tasks.withType<BootRun> {
     enabled = false
 }
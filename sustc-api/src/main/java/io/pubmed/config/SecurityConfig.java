@@ -77,6 +77,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/api/users/register", "/api/users/login").permitAll()
                 // 期刊管理员，可以访问期刊的所有接口
                 .antMatchers("/api/grants/**").hasAnyAuthority("SITE_ADMIN")
+                // 导入会重建所有表，只允许站点管理员
+                .antMatchers("/api/database/import/**", "/api/database/truncate").hasAnyAuthority("SITE_ADMIN")
                 .antMatchers("/api/keywords/**").hasAnyAuthority( "SITE_ADMIN")
                 .antMatchers("/api/journals/**").hasAnyAuthority("JOURNAL_ADMIN","SITE_ADMIN")
                 .antMatchers("/api/authors/**").hasAnyAuthority("JOURNAL_ADMIN", "ARTICLE_ADMIN","SITE_ADMIN")
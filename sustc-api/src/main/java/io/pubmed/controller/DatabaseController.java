@@ -1,6 +1,8 @@
 package io.pubmed.controller;
 
+import io.pubmed.dto.ImportStatus;
 import io.pubmed.service.DatabaseService;
+import io.pubmed.service.impl.ImportJobManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,6 +15,9 @@ public class DatabaseController {
     @Autowired
     private DatabaseService databaseService;
 
+    @Autowired
+    private ImportJobManager importJobManager;
+
     /**
      * 获取项目组成员的学号
      * @return 项目组成员学号列表
@@ -23,12 +28,33 @@ public class DatabaseController {
     }
 
     /**
-     * 导入数据到数据库
+     * 在后台导入数据到数据库，立即返回
      * @param dataPath 数据文件路径
+     * @param options 导入选项，例如 --copy、--incremental、--resume，缺省时使用 --copy
+     * @return 导入任务状态
      */
     @PostMapping("/import")
-    public void importData(@RequestParam String dataPath) {
-        databaseService.importData(dataPath);
+    public ImportStatus importData(@RequestParam String dataPath,
+                                   @RequestParam(required = false) List<String> options) {
+        return importJobManager.start(dataPath, options == null ? List.of("--copy") : options);
+    }
+
+    /**
+     * 查询当前或最近一次导入的进度
+     * @return 导入任务状态，包括各表写入速度、已读取字节数和预计剩余时间
+     */
+    @GetMapping("/import")
+    public ImportStatus getImportStatus() {
+        return importJobManager.status();
+    }
+
+    /**
+     * 取消正在运行的导入，已提交的批次保留，可以用 --resume 继续
+     * @return 导入任务状态
+     */
+    @PostMapping("/import/cancel")
+    public ImportStatus cancelImport() {
+        return importJobManager.cancel();
     }
 
     /**
@@ -0,0 +1,27 @@
+package io.pubmed.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 后台导入任务的进度。
+ */
+@Data
+public class ImportStatus {
+    private String state;                      // IDLE, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    private String phase;                      // 当前阶段，例如 loading、building constraints
+    private String dataPath;                   // 导入的文件、目录或通配符
+    private long records;                      // 已写入的记录数
+    private long bytesRead;                    // 已从磁盘读取的字节数，压缩文件按压缩后的大小计
+    private long totalBytes;                   // 文件大小，多个文件时为总大小
+    private int files;                         // 输入文件数
+    private int filesDone;                     // 已读完的文件数
+    private String currentFile;                // 正在读取的文件
+    private double elapsedSeconds;             // 本次运行已用时间
+    private double recordsPerSecond;           // 本次运行的平均速度
+    private Long etaSeconds;                   // 按本次运行的读取速度估计的剩余时间，无法估计时为 null
+    private Map<String, Long> rows;            // 各表本次运行写入的行数
+    private Map<String, Double> rowsPerSecond; // 各表本次运行的平均写入速度
+    private String error;                      // 失败原因
+}
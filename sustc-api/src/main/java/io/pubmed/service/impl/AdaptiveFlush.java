@@ -0,0 +1,109 @@
+package io.pubmed.service.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按表自适应的刷新大小和按批次自适应的提交间隔。
+ * <p>
+ * 每张表的缓冲区达到各自的目标大小时就单独写出，不必等到提交。目标大小按该表最近的写出速度调整，
+ * 使一次写出大约耗时 {@link #TARGET_FLUSH_NANOS}：窄表（如引用关系）一次能写很多行，带长字段的宽表则少写一些。
+ * 所有表的目标之和不超过内存预算，预算由写得快、需要大缓冲区的表分得更多。
+ * 大小的单位由写入后端决定，COPY 为缓冲区字节数，JDBC batch 为行数。
+ * <p>
+ * 提交间隔以记录数计：提交时的开销（写出剩余缓冲、保存断点和提交本身）超过两次提交之间耗时的
+ * {@link #MAX_COMMIT_OVERHEAD} 时加倍，两次提交相隔超过 {@link #MAX_COMMIT_NANOS} 时减半，
+ * 以限制中断后需要重做的工作量。
+ */
+final class AdaptiveFlush {
+
+    /** 一次写出的目标耗时 */
+    static final long TARGET_FLUSH_NANOS = 100_000_000L;
+    static final double MAX_COMMIT_OVERHEAD = 0.05;
+    static final long MAX_COMMIT_NANOS = 10_000_000_000L;
+    static final int MIN_COMMIT_RECORDS = 5_000;
+    static final int MAX_COMMIT_RECORDS = 500_000;
+    /** JDBC batch 无法得知缓冲的字节数，按每行这么多字节折算内存预算 */
+    private static final int ESTIMATED_ROW_BYTES = 100;
+
+    /** 各表当前的目标大小 */
+    private final AtomicLongArray targets;
+    private final long min;
+    private final long budget;
+    /** 所有表目标大小之和，只在持锁时修改 */
+    private long total;
+
+    private int commitRecords;
+
+    private AdaptiveFlush(int tables, long initial, long min, long budget, int commitRecords) {
+        this.targets = new AtomicLongArray(tables);
+        this.min = min;
+        this.budget = Math.max(budget, min * tables);
+        long start = Math.max(min, Math.min(initial, this.budget / tables));
+        for (int i = 0; i < tables; i++) {
+            targets.set(i, start);
+        }
+        this.total = start * tables;
+        this.commitRecords = commitRecords;
+    }
+
+    /**
+     * COPY 写入：目标为缓冲区字节数。
+     */
+    static AdaptiveFlush bytes(int tables, long budgetBytes, int commitRecords) {
+        return new AdaptiveFlush(tables, 1 << 20, 64 << 10, budgetBytes, commitRecords);
+    }
+
+    /**
+     * JDBC batch 写入：目标为行数。
+     */
+    static AdaptiveFlush rows(int tables, long budgetBytes, int commitRecords) {
+        return new AdaptiveFlush(tables, commitRecords, 1_000, budgetBytes / ESTIMATED_ROW_BYTES, commitRecords);
+    }
+
+    /**
+     * @return 第 table 张表缓冲达到多大时应写出
+     */
+    long target(int table) {
+        return targets.get(table);
+    }
+
+    /**
+     * 记录一次写出。写入线程和 {@link CopyLanes} 的写入线程都会调用。
+     * 远小于目标的写出（提交时剩余的零头）主要由固定开销决定，不用于调整。
+     */
+    synchronized void flushed(int table, long size, long nanos) {
+        long old = targets.get(table);
+        if (size < old / 2 || nanos <= 0) {
+            return;
+        }
+        long desired = (long) ((double) size * TARGET_FLUSH_NANOS / nanos);
+        // 与旧值平均，避免单次抖动造成大幅摆动
+        long next = Math.max(min, (old + desired) / 2);
+        if (next > old) {
+            next = Math.min(next, old + budget - total);
+        }
+        targets.set(table, next);
+        total += next - old;
+    }
+
+    /**
+     * @return 两次提交之间的记录数
+     */
+    int commitRecords() {
+        return commitRecords;
+    }
+
+    /**
+     * 记录一次提交。
+     *
+     * @param overheadNanos 提交时写出剩余缓冲、保存断点和提交所用的时间
+     * @param intervalNanos 距上次提交的时间
+     */
+    void committed(long overheadNanos, long intervalNanos) {
+        if (overheadNanos > intervalNanos * MAX_COMMIT_OVERHEAD) {
+            commitRecords = Math.min(MAX_COMMIT_RECORDS, commitRecords * 2);
+        } else if (intervalNanos > MAX_COMMIT_NANOS) {
+            commitRecords = Math.max(MIN_COMMIT_RECORDS, commitRecords / 2);
+        }
+    }
+}
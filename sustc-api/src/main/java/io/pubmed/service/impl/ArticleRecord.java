@@ -0,0 +1,133 @@
+package io.pubmed.service.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 解析后的一条 NDJSON 记录，只包含 GoodLoader 需要写入的字段。
+ * <p>
+ * 由解析线程填充，交给写入线程去重、分配 id 并写入各表。对象及其子列表在 {@link ArticleRecordBlock}
+ * 中循环复用，{@link #reset()} 只清空计数，不释放已分配的元素。
+ */
+final class ArticleRecord {
+
+    int id;
+    String title;
+    String pubModel;
+    LocalDate created;
+    LocalDate completed;
+
+    final Slots<Author> authors = new Slots<>(Author::new);
+    final List<String> keywords = new ArrayList<>();
+
+    String journalId;
+    String journalCountry;
+    String journalIssn;
+    String journalTitle;
+    String journalVolume;
+    String journalIssue;
+
+    final Slots<PublicationType> publicationTypes = new Slots<>(PublicationType::new);
+    final Slots<ArticleId> articleIds = new Slots<>(ArticleId::new);
+    int[] references = new int[16];
+    int referenceCount;
+    final Slots<Grant> grants = new Slots<>(Grant::new);
+    /** 该记录所在行之后的文件偏移，提交到这条记录为止时作为断点 */
+    long endOffset;
+
+    void reset() {
+        id = 0;
+        title = null;
+        pubModel = null;
+        created = null;
+        completed = null;
+        authors.clear();
+        keywords.clear();
+        journalId = null;
+        journalCountry = null;
+        journalIssn = null;
+        journalTitle = null;
+        journalVolume = null;
+        journalIssue = null;
+        publicationTypes.clear();
+        articleIds.clear();
+        referenceCount = 0;
+        grants.clear();
+    }
+
+    void addReference(int reference) {
+        if (referenceCount == references.length) {
+            references = Arrays.copyOf(references, referenceCount << 1);
+        }
+        references[referenceCount++] = reference;
+    }
+
+    static final class Author {
+        /** 团体作者时为 true，此时名称保存在 lastName 中 */
+        boolean collective;
+        String foreName;
+        String lastName;
+        String initials;
+        String affiliation;
+    }
+
+    static final class PublicationType {
+        String id;
+        String name;
+    }
+
+    static final class ArticleId {
+        String type;
+        String identifier;
+    }
+
+    static final class Grant {
+        String grantId;
+        String acronym;
+        String agency;
+        String country;
+    }
+
+    /**
+     * 可复用元素的列表：{@link #add()} 优先返回上次使用过的对象，由调用方覆盖全部字段。
+     */
+    static final class Slots<T> {
+        private final Supplier<T> factory;
+        private Object[] items = new Object[4];
+        private int size;
+
+        Slots(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        @SuppressWarnings("unchecked")
+        T add() {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size << 1);
+            }
+            T item = (T) items[size];
+            if (item == null) {
+                item = factory.get();
+                items[size] = item;
+            }
+            size++;
+            return item;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            return (T) items[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
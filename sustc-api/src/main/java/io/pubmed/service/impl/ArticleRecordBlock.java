@@ -0,0 +1,44 @@
+package io.pubmed.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * 一个输入分段解析出的记录。写入线程处理完后交还给 {@link ImportPipeline}，其中的记录对象被下一个分段复用。
+ */
+final class ArticleRecordBlock {
+
+    private ArticleRecord[] records = new ArticleRecord[256];
+    private int size;
+    /** 该块最后一条记录之后的文件偏移 */
+    long endOffset;
+    /** 所属文件的序号，见 {@link NdjsonChunk#file} */
+    int file;
+
+    ArticleRecord add() {
+        if (size == records.length) {
+            records = Arrays.copyOf(records, size << 1);
+        }
+        ArticleRecord record = records[size];
+        if (record == null) {
+            record = new ArticleRecord();
+            records[size] = record;
+        }
+        record.reset();
+        size++;
+        return record;
+    }
+
+    ArticleRecord get(int index) {
+        return records[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+        endOffset = 0;
+        file = 0;
+    }
+}
@@ -0,0 +1,314 @@
+package io.pubmed.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.util.Fnv;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * 用 fastjson2 的 {@link JSONReader} 流式解析一行 NDJSON，把需要的字段直接填入可复用的 {@link ArticleRecord}。
+ * <p>
+ * 不构建 JSONObject / JSONArray 树，字段名按 hash 匹配，不需要的字段直接跳过；
+ * 除了最终写入数据库的字符串，每条记录几乎不产生额外对象。无状态，可在多个解析线程中并发使用。
+ */
+final class ArticleRecordParser {
+
+    private static final long ID = Fnv.hashCode64("id");
+    private static final long TITLE = Fnv.hashCode64("title");
+    private static final long PUB_MODEL = Fnv.hashCode64("pub_model");
+    private static final long DATE_CREATED = Fnv.hashCode64("date_created");
+    private static final long AUTHOR = Fnv.hashCode64("author");
+    private static final long KEYWORDS = Fnv.hashCode64("keywords");
+    private static final long JOURNAL = Fnv.hashCode64("journal");
+    private static final long PUBLICATION_TYPES = Fnv.hashCode64("publication_types");
+    private static final long ARTICLE_IDS = Fnv.hashCode64("article_ids");
+    private static final long REFERENCES = Fnv.hashCode64("references");
+    private static final long GRANT = Fnv.hashCode64("grant");
+
+    private static final long YEAR = Fnv.hashCode64("year");
+    private static final long MONTH = Fnv.hashCode64("month");
+    private static final long DAY = Fnv.hashCode64("day");
+
+    private static final long COLLECTIVE_NAME = Fnv.hashCode64("collective_name");
+    private static final long LAST_NAME = Fnv.hashCode64("last_name");
+    private static final long FORE_NAME = Fnv.hashCode64("fore_name");
+    private static final long INITIALS = Fnv.hashCode64("initials");
+    private static final long AFFILIATION = Fnv.hashCode64("affiliation");
+
+    private static final long COUNTRY = Fnv.hashCode64("country");
+    private static final long ISSN = Fnv.hashCode64("issn");
+    private static final long JOURNAL_ISSUE = Fnv.hashCode64("journal_issue");
+    private static final long VOLUME = Fnv.hashCode64("volume");
+    private static final long ISSUE = Fnv.hashCode64("issue");
+
+    private static final long NAME = Fnv.hashCode64("name");
+    private static final long TY = Fnv.hashCode64("ty");
+    private static final long ACRONYM = Fnv.hashCode64("acronym");
+    private static final long AGENCY = Fnv.hashCode64("agency");
+
+    private ArticleRecordParser() {
+    }
+
+    /**
+     * 解析 buf[offset, offset + length) 中的一行 UTF-8 JSON，结果写入 r（调用前应已 {@link ArticleRecord#reset()}）。
+     */
+    static void parse(byte[] buf, int offset, int length, ArticleRecord r) {
+        try (JSONReader reader = JSONReader.of(buf, offset, length, StandardCharsets.UTF_8)) {
+            if (!reader.nextIfObjectStart()) {
+                throw new JSONException("Expected a JSON object at the start of the line");
+            }
+            while (!reader.nextIfObjectEnd()) {
+                long field = reader.readFieldNameHashCode();
+                if (field == ID) {
+                    r.id = reader.readInt32Value();
+                } else if (field == TITLE) {
+                    r.title = readText(reader);
+                } else if (field == PUB_MODEL) {
+                    r.pubModel = readText(reader);
+                } else if (field == DATE_CREATED) {
+                    r.created = readDate(reader);
+                } else if (field == AUTHOR) {
+                    readAuthors(reader, r);
+                } else if (field == KEYWORDS) {
+                    readKeywords(reader, r);
+                } else if (field == JOURNAL) {
+                    readJournal(reader, r);
+                } else if (field == PUBLICATION_TYPES) {
+                    readPublicationTypes(reader, r);
+                } else if (field == ARTICLE_IDS) {
+                    readArticleIds(reader, r);
+                } else if (field == REFERENCES) {
+                    readReferences(reader, r);
+                } else if (field == GRANT) {
+                    readGrants(reader, r);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+        if (r.created == null) {
+            throw new JSONException("Article " + r.id + " has no date_created");
+        }
+        if (r.journalId == null) {
+            throw new JSONException("Article " + r.id + " has no journal");
+        }
+        // date_completed 沿用 date_created，与已导入的数据保持一致
+        r.completed = r.created;
+    }
+
+    private static LocalDate readDate(JSONReader reader) {
+        if (reader.nextIfNull()) {
+            return null;
+        }
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        reader.nextIfObjectStart();
+        while (!reader.nextIfObjectEnd()) {
+            long field = reader.readFieldNameHashCode();
+            if (field == YEAR) {
+                year = reader.readInt32Value();
+            } else if (field == MONTH) {
+                month = reader.readInt32Value();
+            } else if (field == DAY) {
+                day = reader.readInt32Value();
+            } else {
+                reader.skipValue();
+            }
+        }
+        return LocalDate.of(year, month, day);
+    }
+
+    private static void readAuthors(JSONReader reader, ArticleRecord r) {
+        if (reader.nextIfNull()) {
+            return;
+        }
+        reader.nextIfArrayStart();
+        while (!reader.nextIfArrayEnd()) {
+            String collectiveName = null;
+            boolean collective = false;
+            String lastName = null;
+            String foreName = "";
+            String initials = "";
+            String affiliation = "";
+            reader.nextIfObjectStart();
+            while (!reader.nextIfObjectEnd()) {
+                long field = reader.readFieldNameHashCode();
+                if (field == LAST_NAME) {
+                    lastName = readText(reader);
+                } else if (field == FORE_NAME) {
+                    foreName = readText(reader);
+                } else if (field == INITIALS) {
+                    initials = readText(reader);
+                } else if (field == AFFILIATION) {
+                    String value = readText(reader);
+                    affiliation = value == null ? "" : value.replace("[", "").replace("]", "");
+                } else if (field == COLLECTIVE_NAME) {
+                    collective = true;
+                    collectiveName = readText(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            ArticleRecord.Author a = r.authors.add();
+            a.collective = collective;
+            if (collective) {
+                a.lastName = collectiveName;
+                a.foreName = "";
+                a.initials = "";
+                a.affiliation = "";
+            } else {
+                a.lastName = lastName;
+                a.foreName = foreName;
+                a.initials = initials;
+                a.affiliation = affiliation;
+            }
+        }
+    }
+
+    private static void readKeywords(JSONReader reader, ArticleRecord r) {
+        if (reader.nextIfNull()) {
+            return;
+        }
+        reader.nextIfArrayStart();
+        while (!reader.nextIfArrayEnd()) {
+            r.keywords.add(readText(reader));
+        }
+    }
+
+    private static void readJournal(JSONReader reader, ArticleRecord r) {
+        if (reader.nextIfNull()) {
+            return;
+        }
+        reader.nextIfObjectStart();
+        while (!reader.nextIfObjectEnd()) {
+            long field = reader.readFieldNameHashCode();
+            if (field == ID) {
+                r.journalId = readText(reader);
+            } else if (field == COUNTRY) {
+                r.journalCountry = readText(reader);
+            } else if (field == ISSN) {
+                r.journalIssn = readText(reader);
+            } else if (field == TITLE) {
+                r.journalTitle = readText(reader);
+            } else if (field == JOURNAL_ISSUE && !reader.nextIfNull()) {
+                reader.nextIfObjectStart();
+                while (!reader.nextIfObjectEnd()) {
+                    long issueField = reader.readFieldNameHashCode();
+                    if (issueField == VOLUME) {
+                        r.journalVolume = readText(reader);
+                    } else if (issueField == ISSUE) {
+                        r.journalIssue = readText(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    private static void readPublicationTypes(JSONReader reader, ArticleRecord r) {
+        if (reader.nextIfNull()) {
+            return;
+        }
+        reader.nextIfArrayStart();
+        while (!reader.nextIfArrayEnd()) {
+            ArticleRecord.PublicationType p = r.publicationTypes.add();
+            p.id = null;
+            p.name = null;
+            reader.nextIfObjectStart();
+            while (!reader.nextIfObjectEnd()) {
+                long field = reader.readFieldNameHashCode();
+                if (field == ID) {
+                    p.id = readText(reader);
+                } else if (field == NAME) {
+                    p.name = readText(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+    }
+
+    private static void readArticleIds(JSONReader reader, ArticleRecord r) {
+        if (reader.nextIfNull()) {
+            return;
+        }
+        reader.nextIfArrayStart();
+        while (!reader.nextIfArrayEnd()) {
+            ArticleRecord.ArticleId ai = r.articleIds.add();
+            ai.type = null;
+            ai.identifier = "";
+            reader.nextIfObjectStart();
+            while (!reader.nextIfObjectEnd()) {
+                long field = reader.readFieldNameHashCode();
+                if (field == TY) {
+                    ai.type = readText(reader);
+                } else if (field == ID) {
+                    String identifier = readText(reader);
+                    ai.identifier = identifier == null ? "" : identifier;
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+    }
+
+    private static void readReferences(JSONReader reader, ArticleRecord r) {
+        if (reader.nextIfNull()) {
+            return;
+        }
+        reader.nextIfArrayStart();
+        while (!reader.nextIfArrayEnd()) {
+            r.addReference(reader.readInt32Value());
+        }
+    }
+
+    private static void readGrants(JSONReader reader, ArticleRecord r) {
+        if (reader.nextIfNull()) {
+            return;
+        }
+        reader.nextIfArrayStart();
+        while (!reader.nextIfArrayEnd()) {
+            ArticleRecord.Grant g = r.grants.add();
+            g.grantId = null;
+            g.acronym = null;
+            g.agency = null;
+            g.country = null;
+            reader.nextIfObjectStart();
+            while (!reader.nextIfObjectEnd()) {
+                long field = reader.readFieldNameHashCode();
+                if (field == ID) {
+                    g.grantId = readText(reader);
+                } else if (field == ACRONYM) {
+                    g.acronym = readText(reader);
+                } else if (field == AGENCY) {
+                    g.agency = readText(reader);
+                } else if (field == COUNTRY) {
+                    g.country = readText(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * 按 JSONObject#getString 的语义读取一个值：字符串原样返回，数组、对象和数字转成 JSON 文本。
+     */
+    private static String readText(JSONReader reader) {
+        if (reader.isString()) {
+            return reader.readString();
+        }
+        if (reader.nextIfNull()) {
+            return null;
+        }
+        Object value = reader.readAny();
+        return value instanceof String ? (String) value : JSON.toJSONString(value);
+    }
+}
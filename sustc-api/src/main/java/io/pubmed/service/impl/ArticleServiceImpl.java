@@ -11,8 +11,11 @@ import javax.sql.DataSource;
 import java.sql.*;
 
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.List;
 
 import static org.postgresql.core.Oid.UUID;
 
@@ -28,12 +31,14 @@ public class ArticleServiceImpl implements ArticleService {
     public int getArticleCitationsByYear(int id, int year) {
         String sql = "SELECT COUNT(*) FROM article_references ar " +
                 "JOIN article a ON ar.article_id = a.id " +
-                "WHERE ar.reference_id = ? AND EXTRACT(YEAR FROM a.date_completed) = ?";
+                "WHERE ar.reference_id = ? " +
+                "AND a.date_completed >= make_date(?, 1, 1) AND a.date_completed < make_date(? + 1, 1, 1)";
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, id);
             stmt.setInt(2, year);
+            stmt.setInt(3, year);
 
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
@@ -55,21 +60,18 @@ public class ArticleServiceImpl implements ArticleService {
             calendar.setTime(article.getCreated());
             int year = calendar.get(Calendar.YEAR);
             insertArticleAndJournal(article);
-            if (article.getReferences() != null) {
-                for (int i = 0; i < article.getReferences().length; i++) {
-                    int id = Integer.parseInt(article.getReferences()[i]);
-                    citationCountManager.incrementCitationCount(id, 1,year);
-                }
-            }
+            insertReferences(article, year);
             String sqlArticles = "SELECT a.id FROM Article a " +
                     "JOIN Article_Journal aj ON a.id = aj.article_id " +
                     "JOIN Journal j ON aj.journal_id = j.id " +
-                    "WHERE j.title = ? AND EXTRACT(YEAR FROM a.date_created)::int  IN (?, ?)";
+                    "WHERE j.title = ? " +
+                    "AND a.date_created >= make_date(?, 1, 1) AND a.date_created < make_date(? + 1, 1, 1)";
 
             String sqlCountArticles = "SELECT COUNT(*) AS total_articles FROM Article a " +
                     "JOIN Article_Journal aj ON a.id = aj.article_id " +
                     "JOIN Journal j ON aj.journal_id = j.id " +
-                    "WHERE j.title = ? AND EXTRACT(YEAR FROM a.date_created)::int IN (?, ?)";
+                    "WHERE j.title = ? " +
+                    "AND a.date_created >= make_date(?, 1, 1) AND a.date_created < make_date(? + 1, 1, 1)";
 
             double impactFactor = 0.0;
             int totalCitations = 0;
@@ -84,17 +86,21 @@ public class ArticleServiceImpl implements ArticleService {
             stmtArticles.setInt(3, year );
             ResultSet rsArticles = stmtArticles.executeQuery();
 
+            List<Integer> articleIds = new ArrayList<>();
             while (rsArticles.next()) {
-                int articleId = rsArticles.getInt("id");
-                // 使用 CitationCountManager 获取引用次数
-                totalCitations += citationCountManager.getCitationsInYear(articleId, year+1);
+                articleIds.add(rsArticles.getInt("id"));
+            }
+            // 使用 CitationCountManager 一次取得所有文章的引用次数
+            for (int citations : citationCountManager.getCitationsInYear(
+                    articleIds.stream().mapToInt(Integer::intValue).toArray(), year+1)) {
+                totalCitations += citations;
             }
 
             // 获取前两年发表的文章数量
             PreparedStatement stmtCount = conn.prepareStatement(sqlCountArticles);
             stmtCount.setString(1, journal.getTitle());
-            stmtCount.setInt(2, year );
-            stmtCount.setInt(3, year - 1);
+            stmtCount.setInt(2, year - 1);
+            stmtCount.setInt(3, year );
             ResultSet rsCount = stmtCount.executeQuery();
             if (rsCount.next()) {
                 totalArticles = rsCount.getInt("total_articles");
@@ -141,6 +147,27 @@ public class ArticleServiceImpl implements ArticleService {
         insertArticleJournal(article);
     }
 
+    /**
+     * 一条语句写入文章的引用，article_references 上的触发器把它们计入 Article_Citation_Count，
+     * 文章删除时引用行随之删除，计数也恢复原样。
+     */
+    private void insertReferences(Article article, int year) throws SQLException {
+        String[] references = article.getReferences();
+        if (references == null || references.length == 0) {
+            return;
+        }
+        String sql = "INSERT INTO article_references (article_id, reference_id, citing_year) " +
+                "SELECT ?, unnest(?), ? ON CONFLICT DO NOTHING";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, article.getId());
+            stmt.setArray(2, conn.createArrayOf("integer",
+                    Arrays.stream(references).map(Integer::valueOf).toArray()));
+            stmt.setInt(3, year);
+            stmt.executeUpdate();
+        }
+    }
+
     /**
      * Insert the article-journal relation into the Article_Journal table.
      *
@@ -189,6 +216,14 @@ public class ArticleServiceImpl implements ArticleService {
             deleteStmt.executeUpdate();
         }
 
+        // 按年分区时 article_references 没有级联删除的外键
+        String deleteReferencesSQL = "DELETE FROM article_references WHERE article_id = ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement deleteStmt = conn.prepareStatement(deleteReferencesSQL)) {
+            deleteStmt.setInt(1, article.getId());
+            deleteStmt.executeUpdate();
+        }
+
         // Step 2: Delete the article from the Article table
         String deleteArticleSQL = "DELETE FROM Article WHERE id = ?";
         try (PreparedStatement deleteStmt = dataSource.getConnection().prepareStatement(deleteArticleSQL)) {
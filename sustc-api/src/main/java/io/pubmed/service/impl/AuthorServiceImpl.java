@@ -34,17 +34,21 @@ public class AuthorServiceImpl implements AuthorService {
             stmt.setString(1, author.getFore_name());
             stmt.setString(2, author.getLast_name());
             ResultSet rs = stmt.executeQuery();
-            HashMap<Integer, Integer> a = new HashMap<>();
+            List<Integer> articleIds = new ArrayList<>();
             try {
                 while (rs.next()) {
-                    int articleId = rs.getInt("article_id");
-                    // 获取 citationCount
-                    int citationCount = citationCountManager.getCitationCount(articleId);
-                    a.put(articleId, citationCount);
+                    articleIds.add(rs.getInt("article_id"));
                 }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
+            // 一次取得所有文章的 citationCount
+            int[] ids = articleIds.stream().mapToInt(Integer::intValue).toArray();
+            int[] citationCounts = citationCountManager.getCitationTotals(ids);
+            HashMap<Integer, Integer> a = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                a.put(ids[i], citationCounts[i]);
+            }
 
             // 将 HashMap 的 entry 转换为 List
             List<Map.Entry<Integer, Integer>> list = new ArrayList<>(a.entrySet());
@@ -1,18 +1,56 @@
 package io.pubmed.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * 管理 Article_Citation_Count 临时表的引用计数。
+ * 管理 Article_Citation_Count 表的引用计数。
+ * <p>
+ * 启动后在后台把整张表载入内存索引 {@link CitationIndex}，之后的查询直接读索引，不再访问数据库；
+ * 载入完成前仍按原来的方式查询表。计数的修改同时写入表和索引，表只用于持久保存。
+ * 表被导入、恢复快照或清空替换后需调用 {@link #reload()}。
+ * <p>
+ * 其他途径对 article_references 和 Article.date_created 的修改由触发器记入表中并发出通知
+ * （见 {@link LoaderAggregates#CREATE_CITATION_TRIGGERS}），本类自己修改计数时也发出通知。
+ * 每个实例用一个单独的连接 LISTEN，把其他来源的变化加到索引上，因此多个实例、导入程序和经由这两张表的手工修改
+ * 都不会让索引过时。通知带有发出事务的 xid，载入索引时记下数据库快照，
+ * 快照中已可见的事务的通知跳过，不会重复计入；监听连接断开期间的通知会丢失，重连后重新载入。
+ * <p>
+ * 索引同时保存为快照文件（{@link CitationIndex#write}），启动时如果快照的数据版本
+ * （{@link LoaderAggregates#citationVersion}）与数据库一致，直接内存映射读入，否则从表重新载入并写出新快照。
+ * 快照在每次载入后和程序结束时写出，只在数据版本中的序号仅被本实例推进过时写出；计数第一次被修改前先删除快照，
+ * 中途崩溃也不会读到过时的快照。绕过触发器直接修改 Article_Citation_Count 后需要删除快照文件。
+ * <p>
+ * 所有方法都可以并发调用：查询索引不加锁，索引中的计数用原子操作修改；访问数据库时每次从连接池取连接，
+ * 计数用 INSERT ... ON CONFLICT 原子地累加。增减计数之间互不阻塞，只在索引载入取快照和补上变化的瞬间等待。
  */
 @Component
 @Slf4j
@@ -20,44 +58,88 @@ public class CitationCountManager {
 
     @Autowired
     private DataSource dataSource;
+    /** spring.datasource 的连接参数，用来单独建立监听连接；没有时从 dataSource 取 */
+    @Autowired(required = false)
+    private DataSourceProperties dataSourceProperties;
+
+    /** 索引快照文件的位置 */
+    @Value("${citation-count.snapshot:citation-count.snapshot}")
+    private String snapshotPath;
+
+    /** 修改了计数时返回一行，并以本实例 id（第 4 个参数）为来源发出通知，变化为第 5 个参数 */
+    private static final String NOTIFY = " SELECT pg_notify('" + LoaderAggregates.CITATION_CHANNEL + "',"
+            + " txid_current() || ' ' || nextval('" + LoaderAggregates.CITATION_VERSION_SEQUENCE + "') || ' ' || ? || ' ' || ?)"
+            + " FROM c";
+    private static final String UPSERT = "WITH c AS (INSERT INTO Article_Citation_Count (article_id, citation_year, citation_count)"
+            + " VALUES (?, ?, ?) ON CONFLICT (article_id, citation_year)"
+            + " DO UPDATE SET citation_count = Article_Citation_Count.citation_count + excluded.citation_count RETURNING 1)"
+            + NOTIFY;
+    private static final String DECREMENT = "WITH c AS (UPDATE Article_Citation_Count SET citation_count = citation_count - ?"
+            + " WHERE article_id = ? and citation_year=? RETURNING 1)" + NOTIFY;
 
     private final AtomicBoolean initialized = new AtomicBoolean(false);
-    private Connection connection;
+
+    private final ExecutorService indexLoader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "citation-index");
+        t.setDaemon(true);
+        return t;
+    });
+    /** 载入完成的索引，正在载入时为 null */
+    private volatile CitationIndex index;
+    /** 正在载入时，快照之后发生的计数变化 {articleId, year, delta}，载入完成后补到索引上 */
+    private volatile Queue<int[]> pending;
+    /** 增减计数持读锁，载入索引取快照和补上变化时持写锁 */
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    /** 每次 {@link #reload()} 加一，被更新的载入结果作废 */
+    private final AtomicInteger generation = new AtomicInteger();
+    /** 当前索引对应的数据版本 */
+    private volatile String indexVersion;
+    /** 取得 indexVersion 之后本实例修改计数的次数，每次使版本中的序号加一 */
+    private final AtomicLong ownChanges = new AtomicLong();
+    /** 取得 indexVersion 之后是否收到过其他来源的变化，此后的版本无法与索引对应 */
+    private volatile boolean foreignChanges;
+    /** 载入当前（或正在载入的）索引时的数据库快照，从快照文件恢复时为 null */
+    private volatile XidSnapshot indexSnapshot;
+
+    /** 通知中标识本实例的来源，跳过自己发出的通知 */
+    final String instanceId = UUID.randomUUID().toString();
+    private volatile boolean closing;
+    /** 快照文件与当前索引、表一致；为 true 时修改计数前先删除快照 */
+    private volatile boolean snapshotStored;
+    private final Object snapshotLock = new Object();
 
     /**
-     * 异步初始化临时表
+     * 异步初始化临时表。
+     * <p>
+     * GoodLoader 导入时已经写好 Article_Citation_Count 并装好触发器，这里直接使用；
+     * 数据库由旧版本或课程提供的 GoodLoader 导入时，先补上 article_references.citing_year，
+     * 再从 article_references 统计一次。
      */
     public void initializeTempTableAsync() {
         if (initialized.compareAndSet(false, true)) {
-            Statement stmt = null;
-            try {
-                connection = dataSource.getConnection(); // 获取连接
-                stmt = connection.createStatement();
-
-                // 创建临时表
-                String createTempTableSQL = "CREATE TABLE IF NOT EXISTS Article_Citation_Count (" +
-                        "article_id INT, " +
-                        "citation_count INT NOT NULL DEFAULT 0, " +
-                        "citation_year INT NOT NULL, " +
-                        "PRIMARY KEY(article_id, citation_year));";
-                stmt.execute(createTempTableSQL);
-                log.info("创建临时表 Article_Citation_Count 完成。");
-
-                // 清空表
-                String truncate = "TRUNCATE TABLE Article_Citation_Count";
-                stmt.execute(truncate);
-                log.info("被引用表清空完成");
-
-                // 初始化引用计数
-                String initCitationCountSQL = "INSERT INTO Article_Citation_Count (article_id, citation_count, citation_year) " +
-                        "SELECT ar.reference_id AS article_id, " +
-                        "COUNT(*) AS citation_count, " +
-                        "EXTRACT(YEAR FROM a.date_created)::int AS citation_year " +
-                        "FROM article_references ar " +
-                        "JOIN Article a ON ar.article_id = a.id " +
-                        "GROUP BY (ar.reference_id, EXTRACT(YEAR FROM a.date_created)::int);";
-                stmt.execute(initCitationCountSQL);
-                log.info("初始化临时表中的引用计数完成。");
+            try (Connection connection = dataSource.getConnection()) {
+                boolean maintained;
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    LoaderSchema.ensureCitingYear(connection);
+                    maintained = LoaderAggregates.citationsMaintained(connection);
+                    if (!maintained) {
+                        LoaderAggregates.rebuildCitations(connection);
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+                log.info(maintained ? "使用导入时生成的 Article_Citation_Count。" : "初始化临时表中的引用计数完成。");
+                // 先开始监听，此后的变化不会漏掉
+                startListener();
+                if (!maintained || !restoreSnapshot(connection)) {
+                    reload();
+                }
 
             } catch (SQLException e) {
                 log.error("初始化临时表失败。", e);
@@ -66,6 +148,405 @@ public class CitationCountManager {
     }
 
 
+    /**
+     * 数据版本一致时从快照文件恢复索引。
+     *
+     * @return 是否已恢复
+     */
+    private boolean restoreSnapshot(Connection connection) {
+        Path file = Paths.get(snapshotPath);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            String version = LoaderAggregates.citationVersion(connection);
+            CitationIndex restored = CitationIndex.read(file, version);
+            if (restored == null) {
+                log.info("索引快照 {} 与数据库版本 {} 不一致，从表重新载入。", file, version);
+                return false;
+            }
+            indexLock.writeLock().lock();
+            try {
+                index = restored;
+                indexVersion = version;
+                indexSnapshot = null;
+                ownChanges.set(0);
+                foreignChanges = false;
+                snapshotStored = true;
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            log.info("从快照 {} 恢复引用计数索引：{} 篇被引用文章，{} 项，用时 {} ms。", file, restored.articles(),
+                    restored.entries(), System.currentTimeMillis() - start);
+            return true;
+        } catch (IOException | SQLException e) {
+            log.warn("读取索引快照 {} 失败，从表重新载入。", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * 索引与表一致时把它写成快照，调用方持有写锁。
+     * 数据版本中的序号只被本实例推进过时，期间表的变化都已在索引中。
+     */
+    private void storeSnapshot(Connection con) {
+        CitationIndex current = index;
+        if (current == null || snapshotStored || foreignChanges) {
+            return;
+        }
+        try {
+            String version = LoaderAggregates.citationVersion(con);
+            if (!version.equals(advance(indexVersion, ownChanges.get()))) {
+                log.info("数据版本 {} 已被其他来源修改，不写出索引快照。", version);
+                return;
+            }
+            current.write(Paths.get(snapshotPath), version);
+            indexVersion = version;
+            ownChanges.set(0);
+            snapshotStored = true;
+        } catch (IOException | SQLException e) {
+            log.warn("写入索引快照 {} 失败。", snapshotPath, e);
+        }
+    }
+
+    /**
+     * @return 把 version 中的序号加上 changes
+     */
+    private static String advance(String version, long changes) {
+        int colon = version.lastIndexOf(':');
+        return version.substring(0, colon + 1) + (Long.parseLong(version.substring(colon + 1)) + changes);
+    }
+
+    /**
+     * 计数即将改变，删除与之不再一致的快照。
+     */
+    private void invalidateSnapshot() {
+        synchronized (snapshotLock) {
+            if (!snapshotStored) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(Paths.get(snapshotPath));
+                snapshotStored = false;
+            } catch (IOException e) {
+                log.warn("删除索引快照 {} 失败。", snapshotPath, e);
+            }
+        }
+    }
+
+    /**
+     * 在后台重新载入内存索引，载入完成前查询回到数据库。
+     */
+    public void reload() {
+        int current;
+        indexLock.writeLock().lock();
+        try {
+            current = generation.incrementAndGet();
+            index = null;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        indexLoader.execute(() -> loadIndex(current));
+    }
+
+    /**
+     * 直接使用已经建好的索引，不从数据库载入，供测试使用。
+     */
+    void useIndex(CitationIndex loaded) {
+        indexLock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            pending = null;
+            indexSnapshot = null;
+            index = loaded;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    private void loadIndex(int current) {
+        if (generation.get() != current) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            con.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            String version;
+            indexLock.writeLock().lock();
+            try {
+                // 在锁内取得快照：之前的计数变化都已提交，之后的都会记入 pending；
+                // 之后收到的通知中，发出事务在快照中可见的已包含在载入的数据里
+                try (Statement stmt = con.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT txid_current_snapshot()")) {
+                    rs.next();
+                    indexSnapshot = XidSnapshot.parse(rs.getString(1));
+                }
+                version = LoaderAggregates.citationVersion(con);
+                ownChanges.set(0);
+                foreignChanges = false;
+                pending = new ConcurrentLinkedQueue<>();
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            CitationIndex loaded = CitationIndex.load(con);
+            con.commit();
+            indexLock.writeLock().lock();
+            try {
+                if (generation.get() != current) {
+                    return;
+                }
+                for (int[] change : pending) {
+                    loaded.add(change[0], change[1], change[2]);
+                }
+                pending = null;
+                index = loaded;
+                indexVersion = version;
+                snapshotStored = false;
+                storeSnapshot(con);
+                con.commit();
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            log.info("引用计数索引载入完成：{} 篇被引用文章，{} 项，{} KB，用时 {} ms。", loaded.articles(),
+                    loaded.entries(), loaded.memoryBytes() >> 10, System.currentTimeMillis() - start);
+        } catch (SQLException | RuntimeException e) {
+            pending = null;
+            log.error("载入引用计数索引失败，继续从数据库查询。", e);
+        }
+    }
+
+    /**
+     * 开始监听计数变化的通知。
+     */
+    private void startListener() throws SQLException {
+        Connection con = openListener();
+        Thread t = new Thread(() -> listen(con), "citation-listener");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * 监听连接一直占用，按 spring.datasource 的配置单独建立（{@link ConnectionFactory#unpooled}），
+     * 不从连接池取，以免占用池中的连接并触发泄漏检测。
+     */
+    private Connection openListener() throws SQLException {
+        Connection con = dataSourceProperties == null ? dataSource.getConnection()
+                : ConnectionFactory.unpooled(dataSourceProperties).open();
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("LISTEN " + LoaderAggregates.CITATION_CHANNEL);
+        } catch (SQLException e) {
+            con.close();
+            throw e;
+        }
+        return con;
+    }
+
+    private void listen(Connection first) {
+        Connection con = first;
+        while (!closing) {
+            try {
+                if (con == null) {
+                    con = openListener();
+                    // 断开期间的通知已经丢失
+                    reload();
+                }
+                PGNotification[] notifications = con.unwrap(PGConnection.class).getNotifications(1000);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        onNotification(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (closing) {
+                    break;
+                }
+                log.warn("监听引用计数通知的连接断开，5 秒后重连。", e);
+                closeQuietly(con);
+                con = null;
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        closeQuietly(con);
+    }
+
+    private static void closeQuietly(Connection con) {
+        if (con != null) {
+            try {
+                con.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 把其他来源的计数变化加到索引上，负载格式见 {@link LoaderAggregates#CREATE_CITATION_TRIGGERS}。
+     * 负载无法解析时不知道漏掉了哪些变化，重新载入索引。
+     */
+    void onNotification(String payload) {
+        Notification notification;
+        try {
+            notification = Notification.parse(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("无法解析引用计数通知 {}，重新载入索引。", payload, e);
+            reload();
+            return;
+        }
+        if (instanceId.equals(notification.origin)) {
+            return;
+        }
+        if (notification.changes == null) {
+            reload();
+            return;
+        }
+        int[] changes = notification.changes;
+        indexLock.readLock().lock();
+        try {
+            CitationIndex current = index;
+            Queue<int[]> queued = pending;
+            XidSnapshot snapshot = indexSnapshot;
+            // 没有索引时查询直接读表；发出事务在快照中可见的变化已经载入
+            if (current == null && queued == null || snapshot != null && snapshot.visible(notification.xid)) {
+                return;
+            }
+            foreignChanges = true;
+            if (snapshotStored) {
+                invalidateSnapshot();
+            }
+            for (int i = 0; i < changes.length; i += 3) {
+                if (current != null) {
+                    current.add(changes[i], changes[i + 1], changes[i + 2]);
+                } else {
+                    queued.add(new int[]{changes[i], changes[i + 1], changes[i + 2]});
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 一条计数变化通知：{@code "<事务 xid> <序号> <来源> <变化>"}。
+     */
+    static final class Notification {
+        final long xid;
+        final String origin;
+        /** 依次为 {articleId, year, delta}；为 null 时表示需要重新载入 */
+        final int[] changes;
+
+        private Notification(long xid, String origin, int[] changes) {
+            this.xid = xid;
+            this.origin = origin;
+            this.changes = changes;
+        }
+
+        /**
+         * @throws IllegalArgumentException 负载格式不对
+         */
+        static Notification parse(String payload) {
+            String[] parts = payload.split(" ", 4);
+            if (parts.length < 4) {
+                throw new IllegalArgumentException("Expected 4 fields: " + payload);
+            }
+            long xid = Long.parseLong(parts[0]);
+            if ("reload".equals(parts[3])) {
+                return new Notification(xid, parts[2], null);
+            }
+            String[] items = parts[3].split(",");
+            int[] changes = new int[items.length * 3];
+            for (int i = 0; i < items.length; i++) {
+                String[] fields = items[i].split(":");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Expected article:year:delta: " + items[i]);
+                }
+                for (int j = 0; j < 3; j++) {
+                    changes[i * 3 + j] = Integer.parseInt(fields[j]);
+                }
+            }
+            return new Notification(xid, parts[2], changes);
+        }
+    }
+
+    /**
+     * txid_current_snapshot() 的值：xid 小于 xmin 的事务在快照前已结束，不小于 xmax 的在快照后才开始，
+     * 其间除 xip 中仍在进行的以外都已结束。
+     */
+    static final class XidSnapshot {
+        private final long xmin;
+        private final long xmax;
+        private final long[] xip;
+
+        private XidSnapshot(long xmin, long xmax, long[] xip) {
+            this.xmin = xmin;
+            this.xmax = xmax;
+            this.xip = xip;
+        }
+
+        static XidSnapshot parse(String text) {
+            String[] parts = text.split(":", 3);
+            long[] xip = parts[2].isEmpty() ? new long[0]
+                    : Arrays.stream(parts[2].split(",")).mapToLong(Long::parseLong).toArray();
+            return new XidSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), xip);
+        }
+
+        /**
+         * @return 事务 xid 的修改在快照中是否可见；发出通知的事务都已提交
+         */
+        boolean visible(long xid) {
+            return xid < xmin || xid < xmax && Arrays.stream(xip).noneMatch(x -> x == xid);
+        }
+    }
+
+    /**
+     * 在读锁内修改表并更新索引（或记下待补的变化），保证与载入时的快照衔接。
+     */
+    private void changeCitationCount(int articleId, int delta, int year) {
+        if (!initialized.get()) {
+            log.warn("临时表尚未初始化。");
+            return;
+        }
+        indexLock.readLock().lock();
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement stmt = con.prepareStatement(delta > 0 ? UPSERT : DECREMENT)) {
+            if (snapshotStored) {
+                invalidateSnapshot();
+            }
+            if (delta > 0) {
+                stmt.setInt(1, articleId);
+                stmt.setInt(2, year);
+                stmt.setInt(3, delta);
+            } else {
+                stmt.setInt(1, -delta);
+                stmt.setInt(2, articleId);
+                stmt.setInt(3, year);
+            }
+            stmt.setString(4, instanceId);
+            stmt.setString(5, articleId + ":" + year + ":" + delta);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+            }
+            ownChanges.incrementAndGet();
+            CitationIndex current = index;
+            Queue<int[]> changes = pending;
+            if (current != null) {
+                current.add(articleId, year, delta);
+            } else if (changes != null) {
+                changes.add(new int[]{articleId, year, delta});
+            }
+        } catch (SQLException e) {
+            log.error("修改文章ID {} 的引用计数失败。", articleId, e);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
     /**
      * 在程序启动时异步初始化临时表
      */
@@ -88,12 +569,17 @@ public class CitationCountManager {
      * @return 引用计数，如果未找到则返回0
      */
     public int getCitationCount(int articleId) {
+        CitationIndex current = index;
+        if (current != null) {
+            return current.count(articleId);
+        }
         if (!initialized.get()) {
             log.warn("临时表尚未初始化。");
             return 0;
         }
         String sql = "SELECT citation_count FROM Article_Citation_Count WHERE article_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, articleId);
             ResultSet rs = stmt.executeQuery();
             int result=0;
@@ -109,68 +595,27 @@ public class CitationCountManager {
 
     /**
      * 增加指定文章的引用计数。
+     * <p>
+     * 只修改 Article_Citation_Count，不对应任何 article_references 行，从 article_references 重建计数表时会丢失。
+     * 代表真实引用的计数应写入 article_references，由触发器维护。
      *
      * @param articleId 文章ID
      * @param increment 增加的引用次数
      */
     public void incrementCitationCount(int articleId, int increment,int year) {
-        if (!initialized.get()) {
-            log.warn("临时表尚未初始化。");
-            return;
-        }
-        String sql = "UPDATE Article_Citation_Count SET citation_count = citation_count + ? WHERE article_id = ? and citation_year=?";
-        try (PreparedStatement stmt =connection.prepareStatement(sql)) {
-            stmt.setInt(1, increment);
-            stmt.setInt(2, articleId);
-            stmt.setInt(3, year);
-            int rows = stmt.executeUpdate();
-            if (rows == 0) {
-                insertCitationCount(articleId, increment,year);
-            }
-        } catch (SQLException e) {
-            log.error("增加文章ID {} 的引用计数失败。", articleId, e);
-        }
+        changeCitationCount(articleId, increment, year);
     }
 
     /**
-     * 减少指定文章的引用计数。
+     * 减少指定文章的引用计数，与 {@link #incrementCitationCount} 一样只修改 Article_Citation_Count。
      *
      * @param articleId 文章ID
      * @param decrement 减少的引用次数
      */
     public void decrementCitationCount(int articleId, int decrement,int year) {
-        if (!initialized.get()) {
-            log.warn("临时表尚未初始化。");
-            return;
-        }
-        String sql = "UPDATE Article_Citation_Count SET citation_count = citation_count - ? WHERE article_id = ? and citation_year=?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, decrement);
-            stmt.setInt(2, articleId);
-            stmt.setInt(3, year);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            log.error("减少文章ID {} 的引用计数失败。", articleId, e);
-        }
+        changeCitationCount(articleId, -decrement, year);
     }
 
-    /**
-     * 插入新的引用计数记录。
-     *
-     * @param articleId     文章ID
-     * @param citationCount 引用计数
-     */
-    private void insertCitationCount(int articleId, int citationCount,int year) {
-        String sql = "INSERT INTO Article_Citation_Count (article_id, citation_count,citation_year) VALUES (?, ?,?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, articleId);
-            stmt.setInt(2, citationCount);
-            stmt.setInt(3, year);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            log.error("插入文章ID {} 的引用计数失败。", articleId, e);
-        }
-    }
     /**
      * 获取指定文章在特定年份的引用次数。
      *
@@ -179,8 +624,13 @@ public class CitationCountManager {
      * @return 引用次数
      */
     public int getCitationsInYear(int articleId, int year) {
+        CitationIndex current = index;
+        if (current != null) {
+            return current.count(articleId, year);
+        }
         String sql = "SELECT citation_count FROM Article_Citation_Count WHERE article_id = ? and citation_year=?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, articleId);
             stmt.setInt(2, year);
             ResultSet rs = stmt.executeQuery();
@@ -194,22 +644,94 @@ public class CitationCountManager {
     }
 
     /**
-     * 在程序结束时删除临时表。
+     * 批量获取多篇文章的引用计数。
+     *
+     * @param articleIds 文章ID，可以重复
+     * @return 与 articleIds 一一对应的引用计数
      */
-    @PreDestroy
-    public void cleanup() {
-        try (Connection connection = dataSource.getConnection()) {
-            if (connection != null) {
-                try (Statement stmt = connection.createStatement()) {
-                    String dropTempTableSQL = "DROP TABLE IF EXISTS Article_Citation_Count;";
-                    boolean result = stmt.execute(dropTempTableSQL);
-                    log.info("删除临时表 Article_Citation_Count 完成，SQL 执行结果：{}", result);
-                } catch (SQLException e) {
-                    log.error("删除临时表失败。", e);
+    public int[] getCitationTotals(int[] articleIds) {
+        CitationIndex current = index;
+        int[] counts = new int[articleIds.length];
+        if (current != null) {
+            for (int i = 0; i < articleIds.length; i++) {
+                counts[i] = current.count(articleIds[i]);
+            }
+            return counts;
+        }
+        if (!initialized.get()) {
+            log.warn("临时表尚未初始化。");
+            return counts;
+        }
+        String sql = "SELECT article_id, SUM(citation_count) FROM Article_Citation_Count"
+                + " WHERE article_id = ANY(?) GROUP BY article_id";
+        return queryCounts(sql, articleIds, null);
+    }
+
+    /**
+     * 批量获取多篇文章在特定年份的引用次数。
+     *
+     * @param articleIds 文章ID，可以重复
+     * @param year       引用发生的年份
+     * @return 与 articleIds 一一对应的引用次数
+     */
+    public int[] getCitationsInYear(int[] articleIds, int year) {
+        CitationIndex current = index;
+        if (current != null) {
+            int[] counts = new int[articleIds.length];
+            for (int i = 0; i < articleIds.length; i++) {
+                counts[i] = current.count(articleIds[i], year);
+            }
+            return counts;
+        }
+        String sql = "SELECT article_id, citation_count FROM Article_Citation_Count"
+                + " WHERE article_id = ANY(?) and citation_year=?";
+        return queryCounts(sql, articleIds, year);
+    }
+
+    /**
+     * 索引尚未载入时用一次 = ANY(?) 查询取得所有文章的计数，查询失败时返回全 0。
+     */
+    private int[] queryCounts(String sql, int[] articleIds, Integer year) {
+        int[] counts = new int[articleIds.length];
+        if (articleIds.length == 0) {
+            return counts;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("integer",
+                    Arrays.stream(articleIds).boxed().toArray(Integer[]::new)));
+            if (year != null) {
+                stmt.setInt(2, year);
+            }
+            Map<Integer, Integer> byId = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    byId.put(rs.getInt(1), rs.getInt(2));
                 }
             }
+            for (int i = 0; i < articleIds.length; i++) {
+                counts[i] = byId.getOrDefault(articleIds[i], 0);
+            }
+        } catch (SQLException e) {
+            log.error("批量获取 {} 篇文章的引用计数失败。", articleIds.length, e);
+        }
+        return counts;
+    }
+
+    /**
+     * 在程序结束时停止载入索引和监听，并把修改过的索引写成快照。表由导入生成并随引用的增删维护，保留给下次启动使用。
+     */
+    @PreDestroy
+    public void cleanup() {
+        closing = true;
+        indexLoader.shutdownNow();
+        indexLock.writeLock().lock();
+        try (Connection con = dataSource.getConnection()) {
+            storeSnapshot(con);
         } catch (SQLException e) {
-            log.error("数据库连接失败，无法删除临时表。", e);
+            log.warn("写入索引快照 {} 失败。", snapshotPath, e);
+        } finally {
+            indexLock.writeLock().unlock();
         }
     }
 
@@ -0,0 +1,295 @@
+package io.pubmed.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 被引用文章 -> 各年份引用次数的内存索引，由 {@link CitationCountManager} 从 Article_Citation_Count 载入。
+ * <p>
+ * 按 CSR（压缩稀疏行）方式存放在基本类型数组中：被引用文章的 id 升序存放在 articles，第 i 篇文章各年份的计数
+ * 位于 entries[offsets[i], offsets[i + 1])，按年份升序，每项把年份（高 8 位）和次数（低 24 位）压缩在一个 int 中，
+ * totals[i] 是这些计数之和。查询只是一次二分查找和几次数组读取。
+ * <p>
+ * 数组建立后不再扩大：已有 (文章, 年份) 的计数原地修改，新出现的组合以及放不进压缩格式的计数记在 extra 中，
+ * 查询时两者相加。
+ * <p>
+ * 索引可以写成快照文件（{@link #write}），下次启动时内存映射后直接拷入数组（{@link #read}），不必再扫描表。
+ * 文件格式：魔数 {@link #MAGIC}、数据版本（{@link LoaderAggregates#citationVersion}）、文章数、项数，
+ * 然后依次是 articles、offsets、entries、totals 四个数组，最后是 extra 的项数和各项的 (key, 计数)。
+ */
+final class CitationIndex {
+
+    /** 压缩格式能表示的年份为 [BASE_YEAR, BASE_YEAR + 255] */
+    static final int BASE_YEAR = 1800;
+    private static final int COUNT_BITS = 24;
+    private static final int COUNT_MASK = (1 << COUNT_BITS) - 1;
+    static final String MAGIC = "PUBMED-CITATION-INDEX-1";
+
+    private final int[] articles;
+    private final int[] offsets;
+    private final AtomicIntegerArray entries;
+    private final AtomicIntegerArray totals;
+    /** 不在数组中的计数，key 为 articleId << 32 | year */
+    private final ConcurrentHashMap<Long, Integer> extra = new ConcurrentHashMap<>();
+    /** extra 中按文章汇总的计数 */
+    private final ConcurrentHashMap<Integer, Integer> extraTotals = new ConcurrentHashMap<>();
+
+    private CitationIndex(int[] articles, int[] offsets, int[] entries, int[] totals) {
+        this.articles = articles;
+        this.offsets = offsets;
+        this.entries = new AtomicIntegerArray(entries);
+        this.totals = new AtomicIntegerArray(totals);
+    }
+
+    /**
+     * 在 con 的当前事务中读取整张 Article_Citation_Count，调用方需关闭自动提交以便分批读取。
+     * 表不存在时返回空索引。
+     */
+    static CitationIndex load(Connection con) throws SQLException {
+        Builder builder = new Builder();
+        if (LoaderAggregates.exists(con, LoaderAggregates.CITATION_TABLE)) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.setFetchSize(1 << 16);
+                try (ResultSet rs = stmt.executeQuery("SELECT article_id, citation_year, citation_count"
+                        + " FROM article_citation_count ORDER BY article_id, citation_year")) {
+                    while (rs.next()) {
+                        builder.add(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 从快照文件读取索引。
+     *
+     * @return 文件不完整、格式或数据版本与 version 不符时返回 null
+     */
+    static CitationIndex read(Path file, String version) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!MAGIC.equals(readUTF(buf)) || !version.equals(readUTF(buf))) {
+                return null;
+            }
+            int articleCount = buf.getInt();
+            int entryCount = buf.getInt();
+            CitationIndex index = new CitationIndex(readInts(buf, articleCount), readInts(buf, articleCount + 1),
+                    readInts(buf, entryCount), readInts(buf, articleCount));
+            for (int i = buf.getInt(); i > 0; i--) {
+                long key = buf.getLong();
+                index.addExtra((int) (key >> 32), (int) key, buf.getInt());
+            }
+            return index;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static String readUTF(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xffff];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readInts(ByteBuffer buf, int n) {
+        int[] values = new int[n];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * n);
+        return values;
+    }
+
+    /**
+     * 把索引写入快照文件。先写临时文件再改名，写到一半中断不会留下不完整的快照。
+     * 调用方需保证写入期间计数不变。
+     */
+    void write(Path file, String version) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeUTF(MAGIC);
+            out.writeUTF(version);
+            out.writeInt(articles.length);
+            out.writeInt(entries.length());
+            for (int articleId : articles) {
+                out.writeInt(articleId);
+            }
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int k = 0; k < entries.length(); k++) {
+                out.writeInt(entries.get(k));
+            }
+            for (int i = 0; i < totals.length(); i++) {
+                out.writeInt(totals.get(i));
+            }
+            out.writeInt(extra.size());
+            for (Map.Entry<Long, Integer> e : extra.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeInt(e.getValue());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return 被引用文章数
+     */
+    int articles() {
+        return articles.length;
+    }
+
+    /**
+     * @return (文章, 年份) 计数的项数
+     */
+    int entries() {
+        return entries.length() + extra.size();
+    }
+
+    /**
+     * @return 数组占用的字节数，不含 extra
+     */
+    long memoryBytes() {
+        return 4L * (articles.length + offsets.length + entries.length() + totals.length());
+    }
+
+    int count(int articleId) {
+        int i = Arrays.binarySearch(articles, articleId);
+        int count = i >= 0 ? totals.get(i) : 0;
+        if (!extraTotals.isEmpty()) {
+            count += extraTotals.getOrDefault(articleId, 0);
+        }
+        return count;
+    }
+
+    int count(int articleId, int year) {
+        int count = 0;
+        int k = find(articleId, year);
+        if (k >= 0) {
+            count = entries.get(k) & COUNT_MASK;
+        }
+        if (!extra.isEmpty()) {
+            count += extra.getOrDefault(key(articleId, year), 0);
+        }
+        return count;
+    }
+
+    /**
+     * 把 articleId 在 year 的引用次数加上 delta，delta 可以为负。
+     */
+    void add(int articleId, int year, int delta) {
+        int k = find(articleId, year);
+        if (k >= 0) {
+            while (true) {
+                int old = entries.get(k);
+                int next = (old & COUNT_MASK) + delta;
+                if (next < 0 || next > COUNT_MASK) {
+                    break;
+                }
+                if (entries.compareAndSet(k, old, (old & ~COUNT_MASK) | next)) {
+                    totals.addAndGet(Arrays.binarySearch(articles, articleId), delta);
+                    return;
+                }
+            }
+        }
+        addExtra(articleId, year, delta);
+    }
+
+    private void addExtra(int articleId, int year, int delta) {
+        extra.merge(key(articleId, year), delta, Integer::sum);
+        extraTotals.merge(articleId, delta, Integer::sum);
+    }
+
+    /**
+     * @return (articleId, year) 在 entries 中的下标，不在数组中时返回 -1
+     */
+    private int find(int articleId, int year) {
+        int i = Arrays.binarySearch(articles, articleId);
+        int packedYear = year - BASE_YEAR;
+        if (i < 0 || packedYear < 0 || packedYear > 0xff) {
+            return -1;
+        }
+        for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+            int y = entries.get(k) >>> COUNT_BITS;
+            if (y == packedYear) {
+                return k;
+            }
+            if (y > packedYear) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private static long key(int articleId, int year) {
+        return (long) articleId << 32 | (year & 0xffffffffL);
+    }
+
+    /**
+     * 按 (article_id, citation_year) 升序接收计数，顺序之外的行和放不进压缩格式的计数记入 extra。
+     */
+    static final class Builder {
+        private int[] articles = new int[1024];
+        private int[] offsets = new int[1025];
+        private int[] entries = new int[4096];
+        private int[] totals = new int[1024];
+        private int articleCount;
+        private int entryCount;
+        private int lastYear;
+        private final Map<Long, Integer> extra = new HashMap<>();
+
+        void add(int articleId, int year, int count) {
+            int packedYear = year - BASE_YEAR;
+            boolean newArticle = articleCount == 0 || articles[articleCount - 1] != articleId;
+            boolean ordered = newArticle ? articleCount == 0 || articles[articleCount - 1] < articleId
+                    : packedYear > lastYear;
+            if (!ordered || packedYear < 0 || packedYear > 0xff || count < 0 || count > COUNT_MASK) {
+                extra.merge(key(articleId, year), count, Integer::sum);
+                return;
+            }
+            if (newArticle) {
+                if (articleCount == articles.length) {
+                    articles = Arrays.copyOf(articles, articleCount * 2);
+                    totals = Arrays.copyOf(totals, articleCount * 2);
+                    offsets = Arrays.copyOf(offsets, articleCount * 2 + 1);
+                }
+                articles[articleCount] = articleId;
+                offsets[articleCount] = entryCount;
+                articleCount++;
+            }
+            if (entryCount == entries.length) {
+                entries = Arrays.copyOf(entries, entryCount * 2);
+            }
+            entries[entryCount++] = packedYear << COUNT_BITS | count;
+            totals[articleCount - 1] += count;
+            lastYear = packedYear;
+        }
+
+        CitationIndex build() {
+            offsets[articleCount] = entryCount;
+            CitationIndex index = new CitationIndex(Arrays.copyOf(articles, articleCount),
+                    Arrays.copyOf(offsets, articleCount + 1), Arrays.copyOf(entries, entryCount),
+                    Arrays.copyOf(totals, articleCount));
+            extra.forEach((key, count) -> index.addExtra((int) (key >> 32), (int) (long) key, count));
+            return index;
+        }
+    }
+}
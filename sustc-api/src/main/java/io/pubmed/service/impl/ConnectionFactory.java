@@ -0,0 +1,27 @@
+package io.pubmed.service.impl;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * 为导入任务打开新的数据库连接，调用方负责关闭。
+ */
+@FunctionalInterface
+interface ConnectionFactory {
+
+    Connection open() throws SQLException;
+
+    /**
+     * 按 spring.datasource 的配置直接建立连接，不经过连接池。导入、监听这类长时间占用的连接从这里取，
+     * 不占用服务请求的连接，也不会触发连接池的泄漏检测。
+     */
+    static ConnectionFactory unpooled(DataSourceProperties properties) {
+        String url = properties.determineUrl();
+        String username = properties.determineUsername();
+        String password = properties.determinePassword();
+        return () -> DriverManager.getConnection(url, username, password);
+    }
+}
@@ -0,0 +1,159 @@
+package io.pubmed.service.impl;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * --parallel-writers 模式下每张表独占的写入线程和连接。
+ * <p>
+ * 写入端填满一张表的缓冲区后交给 {@link #submit}，由该表的线程在自己的连接上 COPY 并自动提交，
+ * 写入端换用上一次 COPY 完成后空出的缓冲区继续填充。这样各表的 COPY 在多个后端上并行执行，
+ * 并且与解析、去重重叠。各连接分别提交，表之间没有先后关系，只能在导入后再建外键。
+ */
+final class CopyLanes implements AutoCloseable {
+
+    private final Lane[] lanes;
+    private final LoaderMetrics metrics;
+    /** 不为 null 时把每次 COPY 的大小和耗时反馈给它，第 i 条线程对应第 i 张表 */
+    private final AdaptiveFlush policy;
+
+    CopyLanes(ConnectionFactory connections, String[] names, int bufferSize, LoaderMetrics metrics,
+              AdaptiveFlush policy) throws SQLException {
+        this.metrics = metrics;
+        this.policy = policy;
+        lanes = new Lane[names.length];
+        try {
+            for (int i = 0; i < names.length; i++) {
+                lanes[i] = new Lane(connections.open(), names[i], bufferSize);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 把 filled 交给第 lane 条写入线程 COPY，返回一个空缓冲区供继续填充。
+     * 该线程上一次的 COPY 尚未完成时等待它完成，失败时在这里抛出。
+     */
+    PgBinaryCopyBuffer submit(int lane, PgBinaryCopyBuffer filled, String copySql) throws SQLException {
+        if (filled.rows() == 0) {
+            return filled;
+        }
+        Lane l = lanes[lane];
+        PgBinaryCopyBuffer spare = l.await();
+        l.pending = l.executor.submit(() -> {
+            long bytes = filled.size();
+            long nanos = metrics.copyIn(l.name, filled, l.copyManager, copySql);
+            if (policy != null) {
+                policy.flushed(lane, bytes, nanos);
+            }
+            return filled;
+        });
+        return spare;
+    }
+
+    /**
+     * @return 正在 COPY 的写入线程数
+     */
+    int busy() {
+        int busy = 0;
+        for (Lane lane : lanes) {
+            Future<PgBinaryCopyBuffer> pending = lane.pending;
+            if (pending != null && !pending.isDone()) {
+                busy++;
+            }
+        }
+        return busy;
+    }
+
+    /**
+     * 等待所有已提交的 COPY 完成，之后数据对其他连接可见。
+     */
+    void await() throws SQLException {
+        SQLException failure = null;
+        for (Lane lane : lanes) {
+            try {
+                lane.await();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.setNextException(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Lane lane : lanes) {
+            if (lane != null) {
+                lane.close();
+            }
+        }
+    }
+
+    private static final class Lane {
+        final String name;
+        final Connection con;
+        final CopyManager copyManager;
+        final ExecutorService executor;
+        /** 最近一次提交的 COPY，完成后返回已清空的缓冲区 */
+        volatile Future<PgBinaryCopyBuffer> pending;
+        PgBinaryCopyBuffer spare;
+
+        Lane(Connection con, String name, int bufferSize) throws SQLException {
+            this.name = name;
+            this.con = con;
+            try {
+                con.setAutoCommit(true);
+                this.copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+            } catch (SQLException e) {
+                con.close();
+                throw e;
+            }
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "loader-writer-" + name);
+                t.setDaemon(true);
+                return t;
+            });
+            this.spare = new PgBinaryCopyBuffer(bufferSize);
+        }
+
+        PgBinaryCopyBuffer await() throws SQLException {
+            if (pending != null) {
+                try {
+                    spare = pending.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for writer", e);
+                } finally {
+                    pending = null;
+                }
+            }
+            return spare;
+        }
+
+        void close() {
+            executor.shutdownNow();
+            try {
+                con.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
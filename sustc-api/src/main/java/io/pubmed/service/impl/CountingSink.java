@@ -0,0 +1,121 @@
+package io.pubmed.service.impl;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * 统计每张表写入的行数再交给下层写入后端。计数只在写入线程中累加，{@link #publish} 时汇总到 {@link ImportProgress}。
+ */
+final class CountingSink implements LoaderSink {
+
+    private final LoaderSink delegate;
+    private final long[] rows = new long[LoaderTable.values().length];
+
+    CountingSink(LoaderSink delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 把上次发布以来的计数加到 progress 上。
+     */
+    void publish(ImportProgress progress) {
+        for (LoaderTable table : LoaderTable.values()) {
+            long count = rows[table.ordinal()];
+            if (count != 0) {
+                progress.addRows(table, count);
+                rows[table.ordinal()] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void article(int id, String title, String pubModel, LocalDate created, LocalDate completed)
+            throws SQLException {
+        rows[LoaderTable.ARTICLE.ordinal()]++;
+        delegate.article(id, title, pubModel, created, completed);
+    }
+
+    @Override
+    public void author(int id, String foreName, String lastName, String initials, boolean collective,
+                       String affiliation) throws SQLException {
+        rows[LoaderTable.AUTHORS.ordinal()]++;
+        delegate.author(id, foreName, lastName, initials, collective, affiliation);
+    }
+
+    @Override
+    public void articleAuthor(int articleId, int authorId) throws SQLException {
+        rows[LoaderTable.ARTICLE_AUTHORS.ordinal()]++;
+        delegate.articleAuthor(articleId, authorId);
+    }
+
+    @Override
+    public void journal(String id, String country, String issn, String title, String volume, String issue)
+            throws SQLException {
+        rows[LoaderTable.JOURNAL.ordinal()]++;
+        delegate.journal(id, country, issn, title, volume, issue);
+    }
+
+    @Override
+    public void articleJournal(int articleId, String journalId) throws SQLException {
+        rows[LoaderTable.ARTICLE_JOURNAL.ordinal()]++;
+        delegate.articleJournal(articleId, journalId);
+    }
+
+    @Override
+    public void keyword(int id, String keyword) throws SQLException {
+        rows[LoaderTable.KEYWORDS.ordinal()]++;
+        delegate.keyword(id, keyword);
+    }
+
+    @Override
+    public void articleKeyword(int articleId, int keywordId) throws SQLException {
+        rows[LoaderTable.ARTICLE_KEYWORDS.ordinal()]++;
+        delegate.articleKeyword(articleId, keywordId);
+    }
+
+    @Override
+    public void publicationType(String id, String name) throws SQLException {
+        rows[LoaderTable.PUBLICATION_TYPES.ordinal()]++;
+        delegate.publicationType(id, name);
+    }
+
+    @Override
+    public void articlePublicationType(int articleId, String pubTypeId) throws SQLException {
+        rows[LoaderTable.ARTICLE_PUBLICATION_TYPES.ordinal()]++;
+        delegate.articlePublicationType(articleId, pubTypeId);
+    }
+
+    @Override
+    public void articleId(int id, int articleId, String type, String identifier) throws SQLException {
+        rows[LoaderTable.ARTICLE_IDS.ordinal()]++;
+        delegate.articleId(id, articleId, type, identifier);
+    }
+
+    @Override
+    public void grant(int id, String grantId, String acronym, String agency, String country) throws SQLException {
+        rows[LoaderTable.GRANT_INFO.ordinal()]++;
+        delegate.grant(id, grantId, acronym, agency, country);
+    }
+
+    @Override
+    public void articleGrant(int articleId, int grantId) throws SQLException {
+        rows[LoaderTable.ARTICLE_GRANTS.ordinal()]++;
+        delegate.articleGrant(articleId, grantId);
+    }
+
+    @Override
+    public void reference(int articleId, int referenceId, int citingYear) throws SQLException {
+        rows[LoaderTable.ARTICLE_REFERENCES.ordinal()]++;
+        delegate.reference(articleId, referenceId, citingYear);
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        delegate.close();
+    }
+}
@@ -31,6 +31,12 @@ public class DatabaseServiceImpl implements DatabaseService {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private ImportJobManager importJobManager;
+
+    @Autowired
+    private CitationCountManager citationCountManager;
+
     @Override
     public List<Integer> getGroupMembers() {
         return Arrays.asList(12311624, 12311124);
@@ -38,13 +44,7 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     @Override
     public void importData(String data_path) {
-        String sql = "INSERT INTO authors (fore_name, last_name, initials) VALUES ('test', 'test', 'test') ";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        importJobManager.start(data_path, List.of("--copy"));
     }
 
     /*
@@ -77,6 +77,7 @@ public class DatabaseServiceImpl implements DatabaseService {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        citationCountManager.reload();
     }
 
     @Override
@@ -0,0 +1,412 @@
+package io.pubmed.service.impl;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 整库快照：把导入的表和统计表以 {@code COPY ... TO STDOUT (FORMAT binary)} 导出到一个文件，需要时再原样恢复，
+ * 基准测试之间重置数据库不必重新导入 NDJSON。
+ * <p>
+ * 导出时每张表一个连接并行 COPY，所有连接通过 {@code pg_export_snapshot()} 共享同一快照，得到一致的数据；
+ * 恢复时先建不带约束的空表，每张表一个连接并行 COPY，最后用 {@link LoaderSchema#buildConstraints} 并行建约束和索引。
+ * <p>
+ * 文件格式：魔数 {@link #MAGIC}、表数，然后每张表依次为表名、列名列表、行数、数据段长度，之后按同样的顺序
+ * 存放各表的数据段（zstd 压缩的 binary COPY 流）。
+ */
+final class DatabaseSnapshot {
+
+    static final String MAGIC = "PUBMED-SNAPSHOT-1";
+
+    /** 导出的表及其列，统计表不存在时跳过，恢复后重新统计 */
+    private static final List<String[]> TABLES = new ArrayList<>();
+
+    static {
+        for (LoaderTable table : LoaderTable.values()) {
+            TABLES.add(new String[]{table.tableName(), table.columnList()});
+        }
+        TABLES.add(new String[]{LoaderAggregates.CITATION_TABLE, "article_id,citation_year,citation_count"});
+        TABLES.add(new String[]{LoaderAggregates.KEYWORD_TABLE, "keyword_id,year,article_count"});
+    }
+
+    private DatabaseSnapshot() {
+    }
+
+    /**
+     * 快照中的一张表。
+     */
+    static final class Section {
+        final String table;
+        final String columns;
+        long rows;
+        long length;
+        /** 数据段在文件中的起始位置，只在恢复时使用 */
+        long offset;
+
+        Section(String table, String columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * 导出快照，覆盖已有文件。
+     *
+     * @return 各表的行数和数据段长度
+     */
+    static List<Section> dump(ConnectionFactory connections, Path file, int parallelism)
+            throws SQLException, IOException {
+        List<Section> sections = new ArrayList<>();
+        List<Path> parts = new ArrayList<>();
+        ExecutorService pool = pool("snapshot-dump", parallelism);
+        try (Connection leader = connections.open()) {
+            leader.setAutoCommit(false);
+            String snapshot;
+            try (Statement stmt = leader.createStatement()) {
+                stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+                try (ResultSet rs = stmt.executeQuery("select pg_export_snapshot()")) {
+                    rs.next();
+                    snapshot = rs.getString(1);
+                }
+            }
+            for (String[] table : TABLES) {
+                if (LoaderAggregates.exists(leader, table[0])) {
+                    sections.add(new Section(table[0], table[1]));
+                    parts.add(file.resolveSibling(file.getFileName() + "." + table[0] + ".part"));
+                }
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < sections.size(); i++) {
+                Section section = sections.get(i);
+                Path part = parts.get(i);
+                futures.add(pool.submit(() -> {
+                    dumpTable(connections, snapshot, section, part);
+                    return null;
+                }));
+            }
+            await(futures);
+            leader.rollback();
+
+            // 先写到临时文件，完整写出后再替换，中途失败不会留下半个快照
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel target = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.wrap(header(sections));
+                while (header.hasRemaining()) {
+                    target.write(header);
+                }
+                for (Path part : parts) {
+                    try (FileChannel source = FileChannel.open(part)) {
+                        long position = 0;
+                        long size = source.size();
+                        while (position < size) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            pool.shutdownNow();
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+        }
+        return sections;
+    }
+
+    private static void dumpTable(ConnectionFactory connections, String snapshot, Section section, Path part)
+            throws SQLException, IOException {
+        try (Connection con = connections.open()) {
+            con.setAutoCommit(false);
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+                stmt.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+            }
+            CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+            try (OutputStream out = new ZstdOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(part), 1 << 16), 3)) {
+                // 按年分区的表只能以 COPY (SELECT ...) 的形式导出
+                section.rows = copyManager.copyOut("COPY (SELECT " + section.columns + " FROM " + section.table
+                        + ") TO STDOUT (FORMAT binary)", out);
+            }
+            section.length = Files.size(part);
+            con.rollback();
+        }
+    }
+
+    private static byte[] header(List<Section> sections) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(MAGIC);
+        out.writeInt(sections.size());
+        for (Section section : sections) {
+            out.writeUTF(section.table);
+            out.writeUTF(section.columns);
+            out.writeLong(section.rows);
+            out.writeLong(section.length);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 读取快照文件的目录，并算出各数据段的位置。
+     */
+    static List<Section> read(Path file) throws IOException {
+        try (InputStream raw = Files.newInputStream(file)) {
+            CountingStream counting = new CountingStream(new BufferedInputStream(raw));
+            DataInputStream in = new DataInputStream(counting);
+            if (!MAGIC.equals(in.readUTF())) {
+                throw new IOException(file + " is not a database snapshot");
+            }
+            int count = in.readInt();
+            List<Section> sections = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Section section = new Section(in.readUTF(), in.readUTF());
+                section.rows = in.readLong();
+                section.length = in.readLong();
+                sections.add(section);
+            }
+            long offset = counting.count;
+            for (Section section : sections) {
+                section.offset = offset;
+                offset += section.length;
+            }
+            if (offset != Files.size(file)) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            return sections;
+        }
+    }
+
+    /**
+     * 用快照替换数据库中的导入表和统计表，之后的状态与快照导出时相同，没有导入断点。
+     *
+     * @return 各表恢复的行数
+     */
+    static List<Section> restore(ConnectionFactory connections, Path file, int parallelism)
+            throws SQLException, IOException {
+        List<Section> sections = read(file);
+        for (Section section : sections) {
+            if (TABLES.stream().noneMatch(t -> t[0].equals(section.table) && t[1].equals(section.columns))) {
+                throw new IOException("Snapshot table " + section.table + " (" + section.columns
+                        + ") does not match the current schema");
+            }
+        }
+        try (Connection con = connections.open(); Statement stmt = con.createStatement()) {
+            con.setAutoCommit(false);
+            // 沿用数据库当前的分区方式
+            LoaderSchema.YearPartitions partitions = LoaderSchema.partitions(con);
+            LoaderSchema.dropTables(stmt);
+            LoaderSchema.createTables(stmt, partitions);
+            LoaderCheckpoint.reset(stmt);
+            LoaderAggregates.createTables(stmt);
+            con.commit();
+        }
+
+        ExecutorService pool = pool("snapshot-restore", parallelism);
+        try (FileChannel channel = FileChannel.open(file)) {
+            // 大表先开始，缩短最后一个 COPY 的等待
+            List<Section> order = new ArrayList<>(sections);
+            order.sort(Comparator.comparingLong((Section s) -> s.length).reversed());
+            List<Future<?>> futures = new ArrayList<>();
+            for (Section section : order) {
+                futures.add(pool.submit(() -> {
+                    try (Connection con = connections.open();
+                         InputStream in = new ZstdInputStream(new BufferedInputStream(
+                                 new SectionStream(channel, section.offset, section.length), 1 << 16))) {
+                        con.setAutoCommit(true);
+                        con.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                                "COPY " + section.table + " (" + section.columns + ") FROM STDIN (FORMAT binary)", in);
+                    }
+                    return null;
+                }));
+            }
+            await(futures);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        LoaderSchema.buildConstraints(connections, parallelism);
+        try (Connection con = connections.open(); Statement stmt = con.createStatement()) {
+            con.setAutoCommit(true);
+            if (sections.stream().anyMatch(s -> s.table.equals(LoaderAggregates.CITATION_TABLE))) {
+                stmt.execute(LoaderAggregates.CITATION_PRIMARY_KEY);
+                LoaderAggregates.createCitationTriggers(stmt);
+            } else {
+                LoaderAggregates.rebuildCitations(con);
+            }
+            if (sections.stream().anyMatch(s -> s.table.equals(LoaderAggregates.KEYWORD_TABLE))) {
+                stmt.execute(LoaderAggregates.KEYWORD_PRIMARY_KEY);
+                stmt.execute(LoaderAggregates.CREATE_KEYWORD_TRIGGERS);
+            } else {
+                LoaderAggregates.rebuildKeywords(con);
+            }
+            stmt.execute("ANALYZE " + LoaderAggregates.CITATION_TABLE);
+            stmt.execute("ANALYZE " + LoaderAggregates.KEYWORD_TABLE);
+        }
+        return sections;
+    }
+
+    private static ExecutorService pool(String name, int parallelism) {
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static void await(List<Future<?>> futures) throws SQLException, IOException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while copying snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * 文件中 [offset, offset + length) 的一段，用按位置读取的方式访问，多个线程可共用一个 {@link FileChannel}。
+     */
+    private static final class SectionStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        SectionStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of snapshot file");
+            }
+            position += n;
+            return n;
+        }
+    }
+
+    private static final class CountingStream extends FilterInputStream {
+        long count;
+
+        CountingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * 用法：DatabaseSnapshot dump|restore 快照文件 [--threads=N]，连接参数与 {@link GoodLoader#main} 相同。
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || !("dump".equals(args[0]) || "restore".equals(args[0]))) {
+            System.err.println("Usage: DatabaseSnapshot dump|restore <file> [--threads=N]");
+            System.err.println(GoodLoader.CONNECTION_USAGE);
+            System.exit(2);
+        }
+        ConnectionFactory connections;
+        try {
+            connections = GoodLoader.localConnections();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(GoodLoader.CONNECTION_USAGE);
+            System.exit(2);
+            return;
+        }
+        int threads = Math.min(8, Runtime.getRuntime().availableProcessors());
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("--threads=")) {
+                threads = Math.max(1, Integer.parseInt(args[i].substring("--threads=".length())));
+            }
+        }
+        Path file = Path.of(args[1]);
+        long start = System.currentTimeMillis();
+        try {
+            List<Section> sections = "dump".equals(args[0])
+                    ? dump(connections, file, threads)
+                    : restore(connections, file, threads);
+            for (Section section : sections) {
+                System.out.println(section.table + ": " + section.rows + " rows, " + section.length + " bytes");
+            }
+            System.out.println(args[0] + " of " + file + " took " + (System.currentTimeMillis() - start) * 1.0 / 1000
+                    + "s");
+        } catch (SQLException e) {
+            System.err.println("SQL error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Fatal error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
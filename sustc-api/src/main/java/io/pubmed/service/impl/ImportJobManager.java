@@ -0,0 +1,218 @@
+package io.pubmed.service.impl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.pubmed.dto.ImportStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在后台线程中用 {@link GoodLoader} 导入数据，同一时间只运行一个导入任务；
+ * {@link DatabaseSnapshot} 快照的导出和恢复也在这里执行，与导入互斥。
+ * 导入的连接要占用整个任务，按 spring.datasource 的配置在连接池之外单独建立；
+ * 没有该配置时才从 {@link DataSource} 取，并按连接池大小限制导入同时占用的连接数。
+ */
+@Component
+@Slf4j
+public class ImportJobManager {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired(required = false)
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private CitationCountManager citationCountManager;
+
+    /**
+     * 导入从连接池取连接时，池中留给服务请求的连接数
+     */
+    private static final int SERVING_RESERVE = 2;
+    /** 快照导出和恢复并行 COPY 的连接数 */
+    private static final int SNAPSHOT_THREADS = 4;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "import-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile ImportProgress current;
+
+    /**
+     * 启动导入任务。
+     *
+     * @param dataPath ndjson 文件、目录或通配符
+     * @param options  GoodLoader 的命令行选项，例如 --copy、--incremental，见 {@link LoaderOptions}
+     * @return 刚启动的任务的状态
+     * @throws IllegalStateException    已有导入任务在运行
+     * @throws IllegalArgumentException 选项无法识别，或连接池放不下选项需要的连接
+     */
+    public synchronized ImportStatus start(String dataPath, List<String> options) {
+        checkIdle();
+        List<String> args = new ArrayList<>(options);
+        args.add(dataPath);
+        LoaderOptions loaderOptions = LoaderOptions.parse(args.toArray(new String[0]));
+        ConnectionFactory connections = connections(loaderOptions);
+        ImportProgress progress = new ImportProgress(dataPath);
+        current = progress;
+        executor.execute(() -> run(loaderOptions, connections, progress));
+        return progress.snapshot();
+    }
+
+    /**
+     * 把导入的表和统计表导出为快照文件。在调用线程中执行，持有本对象的锁，导出期间不能启动导入。
+     *
+     * @param snapshotPath 快照文件，已存在时被替换
+     * @throws IllegalStateException 有导入任务在运行
+     */
+    public synchronized void dumpSnapshot(String snapshotPath) {
+        checkIdle();
+        long start = System.currentTimeMillis();
+        try {
+            DatabaseSnapshot.dump(connections(), Paths.get(snapshotPath), snapshotThreads());
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.info("快照 {} 导出完成，用时 {} ms", snapshotPath, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 用快照文件替换导入的表，完成后重新载入引用计数索引。在调用线程中执行，持有本对象的锁，恢复期间不能启动导入。
+     *
+     * @param snapshotPath {@link #dumpSnapshot} 写出的快照文件
+     * @throws IllegalStateException 有导入任务在运行
+     */
+    public synchronized void restoreSnapshot(String snapshotPath) {
+        checkIdle();
+        long start = System.currentTimeMillis();
+        try {
+            DatabaseSnapshot.restore(connections(), Paths.get(snapshotPath), snapshotThreads());
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            citationCountManager.reload();
+        }
+        log.info("快照 {} 恢复完成，用时 {} ms", snapshotPath, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 在持有本对象的锁时调用：导入任务只在 {@link #start} 中启动，检查之后到释放锁之前不会有新的导入。
+     */
+    private void checkIdle() {
+        if (current != null && current.state() == ImportProgress.State.RUNNING) {
+            throw new IllegalStateException("An import of " + current.dataPath + " is already running");
+        }
+    }
+
+    /**
+     * 有 spring.datasource 配置时在连接池之外建立连接，否则从连接池取。
+     */
+    private ConnectionFactory connections() {
+        return dataSourceProperties != null ? ConnectionFactory.unpooled(dataSourceProperties) : dataSource::getConnection;
+    }
+
+    /**
+     * @return 从连接池取连接时，池中留出 {@link #SERVING_RESERVE} 个之后还能占用的连接数；连接不经过 Hikari 连接池时不受限
+     */
+    private int spareConnections() {
+        if (dataSourceProperties != null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class)
+                    ? dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize() - SERVING_RESERVE
+                    : Integer.MAX_VALUE;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 导入期间占用主连接和 --parallel-writers 的每个写入连接，之后并行建约束占用 indexThreads 个连接。
+     * 从连接池取连接时这些都要放得下，否则导入会一直等连接池超时：放不下写入连接时拒绝，建约束的线程数按可用连接截断。
+     */
+    private ConnectionFactory connections(LoaderOptions options) {
+        int available = spareConnections();
+        int needed = 1 + options.writerConnections();
+        if (needed > available) {
+            throw new IllegalArgumentException("The import needs " + needed + " pooled connections but only "
+                    + Math.max(available, 0) + " can be spared"
+                    + (options.writerConnections() > 0 ? "; drop --parallel-writers" : ""));
+        }
+        options.indexThreads = Math.min(options.indexThreads, available);
+        return connections();
+    }
+
+    /**
+     * @return 快照并行 COPY 的连接数，导出时另有一个连接导出事务快照
+     */
+    private int snapshotThreads() {
+        int threads = Math.min(SNAPSHOT_THREADS, spareConnections() - 1);
+        if (threads < 1) {
+            throw new IllegalStateException("The connection pool is too small for snapshots");
+        }
+        return threads;
+    }
+
+    private void run(LoaderOptions options, ConnectionFactory connections, ImportProgress progress) {
+        log.info("开始导入 {}", progress.dataPath);
+        try {
+            long records = new GoodLoader(options, connections, progress, false).run();
+            progress.finish(ImportProgress.State.SUCCEEDED, null);
+            log.info("导入 {} 完成，共 {} 条记录", progress.dataPath, records);
+        } catch (CancellationException e) {
+            progress.finish(ImportProgress.State.CANCELLED, e.getMessage());
+            log.info("导入 {} 已取消：{}", progress.dataPath, e.getMessage());
+        } catch (Exception e) {
+            progress.finish(ImportProgress.State.FAILED, e.getMessage());
+            log.error("导入 {} 失败", progress.dataPath, e);
+        } finally {
+            // 导入重写了 Article_Citation_Count，失败或取消时也可能已提交了一部分
+            citationCountManager.reload();
+        }
+    }
+
+    /**
+     * @return 最近一次导入任务的状态，从未导入时 state 为 IDLE
+     */
+    public ImportStatus status() {
+        ImportProgress progress = current;
+        if (progress == null) {
+            ImportStatus status = new ImportStatus();
+            status.setState("IDLE");
+            return status;
+        }
+        return progress.snapshot();
+    }
+
+    /**
+     * 请求取消正在运行的导入。任务在处理完当前记录块后回滚未提交的批次并停止，已提交的部分可以用 --resume 继续。
+     */
+    public ImportStatus cancel() {
+        ImportProgress progress = current;
+        if (progress != null && progress.state() == ImportProgress.State.RUNNING) {
+            progress.requestCancel();
+        }
+        return status();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancel();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,179 @@
+package io.pubmed.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 导入流水线：读取线程从 {@link NdjsonSource} 取出按换行对齐的分段，交给 N 个解析线程并行解析，
+ * 写入线程再通过 {@link #next()} 按输入顺序取回解析好的 {@link ArticleRecordBlock}，用完后 {@link #release} 交还复用。
+ * <p>
+ * 分段队列有界，写入跟不上时读取和解析会自动阻塞，内存占用不会随文件大小增长。
+ */
+final class ImportPipeline implements AutoCloseable {
+
+    private static final Future<ArticleRecordBlock> END = CompletableFuture.completedFuture(null);
+
+    /**
+     * 解析线程复制映射分段用的缓冲区，避免每个分段都分配新数组。
+     * fastjson2 只解析 byte[]（JSONReader.of(ByteBuffer) 内部同样先复制），直接缓冲区的分段在这里整段复制一次，不再按行复制
+     */
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[0]);
+
+    private final NdjsonSource in;
+    private final ExecutorService parsers;
+    private final BlockingQueue<Future<ArticleRecordBlock>> blocks;
+    /** 写入线程已处理完、可供解析线程复用的记录块 */
+    private final ConcurrentLinkedQueue<ArticleRecordBlock> free = new ConcurrentLinkedQueue<>();
+    private final Thread reader;
+    private final LoaderMetrics metrics;
+    private volatile boolean closed;
+
+    ImportPipeline(NdjsonSource in, int parserThreads, LoaderMetrics metrics) {
+        this.in = in;
+        this.metrics = metrics;
+        AtomicInteger seq = new AtomicInteger();
+        this.parsers = Executors.newFixedThreadPool(parserThreads, r -> {
+            Thread t = new Thread(r, "loader-parser-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.blocks = new ArrayBlockingQueue<>(parserThreads * 4);
+        this.reader = new Thread(this::readLoop, "loader-reader");
+        this.reader.setDaemon(true);
+    }
+
+    void start() {
+        reader.start();
+    }
+
+    /**
+     * @return 已提交解析、等待写入线程取走的分段数
+     */
+    int queuedBlocks() {
+        return blocks.size();
+    }
+
+    /**
+     * 按输入顺序返回下一块解析好的记录。
+     *
+     * @return 记录块，输入读完时返回 null
+     */
+    ArticleRecordBlock next() throws IOException, InterruptedException {
+        Future<ArticleRecordBlock> block = blocks.take();
+        if (block == END) {
+            return null;
+        }
+        try {
+            return block.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to parse input: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 交还处理完的记录块，其中的对象会被后续分段复用。
+     */
+    void release(ArticleRecordBlock block) {
+        free.offer(block);
+    }
+
+    private void readLoop() {
+        try {
+            NdjsonChunk chunk;
+            while (!closed && (chunk = in.next()) != null) {
+                NdjsonChunk c = chunk;
+                blocks.put(parsers.submit(() -> {
+                    try {
+                        long t0 = System.nanoTime();
+                        ArticleRecordBlock block = parseChunk(c, acquire());
+                        metrics.parsed(block.size(), c.data.remaining(), System.nanoTime() - t0);
+                        return block;
+                    } finally {
+                        in.release(c);
+                    }
+                }));
+            }
+            blocks.put(END);
+        } catch (IOException e) {
+            putQuietly(CompletableFuture.failedFuture(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ArticleRecordBlock acquire() {
+        ArticleRecordBlock block = free.poll();
+        if (block == null) {
+            block = new ArticleRecordBlock();
+        }
+        block.clear();
+        return block;
+    }
+
+    private static ArticleRecordBlock parseChunk(NdjsonChunk chunk, ArticleRecordBlock block) {
+        ByteBuffer data = chunk.data;
+        byte[] buf;
+        int from;
+        int to;
+        if (data.hasArray()) {
+            buf = data.array();
+            from = data.arrayOffset() + data.position();
+            to = from + data.remaining();
+        } else {
+            buf = COPY_BUFFER.get();
+            if (buf.length < data.remaining()) {
+                buf = new byte[data.remaining()];
+                COPY_BUFFER.set(buf);
+            }
+            from = 0;
+            to = data.remaining();
+            data.duplicate().get(buf, 0, to);
+        }
+        int lineStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || buf[i] == '\n') {
+                int lineEnd = i;
+                if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    ArticleRecord record = block.add();
+                    ArticleRecordParser.parse(buf, lineStart, lineEnd - lineStart, record);
+                    record.endOffset = chunk.startOffset + Math.min(i + 1, to) - from;
+                }
+                lineStart = i + 1;
+            }
+        }
+        block.endOffset = chunk.endOffset;
+        block.file = chunk.file;
+        return block;
+    }
+
+    private void putQuietly(Future<ArticleRecordBlock> block) {
+        try {
+            blocks.put(block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        reader.interrupt();
+        parsers.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package io.pubmed.service.impl;
+
+import io.pubmed.dto.ImportStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一次导入的进度，由写入线程更新，其他线程通过 {@link #snapshot()} 读取。
+ * <p>
+ * 写入线程每处理完一个记录块更新一次，读取方看到的是最近一个记录块结束时的状态。
+ */
+final class ImportProgress {
+
+    enum State { RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    final String dataPath;
+    private final AtomicLongArray rows = new AtomicLongArray(LoaderTable.values().length);
+
+    private volatile State state = State.RUNNING;
+    private volatile String phase = "starting";
+    private volatile String error;
+    private volatile boolean cancelRequested;
+
+    private volatile long startMillis = System.currentTimeMillis();
+    private volatile long endMillis;
+    private volatile long totalBytes;
+    private volatile long startBytes;
+    private volatile long bytesRead;
+    private volatile long records;
+    private volatile long startRecords;
+    private volatile int files = 1;
+    private volatile int filesDone;
+    private volatile String currentFile;
+
+    ImportProgress(String dataPath) {
+        this.dataPath = dataPath;
+    }
+
+    void phase(String phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * 开始读取文件，之后的速度和剩余时间从这里开始计算。
+     */
+    void loading(long totalBytes, long startBytes, long records) {
+        this.totalBytes = totalBytes;
+        this.startBytes = startBytes;
+        this.bytesRead = startBytes;
+        this.records = records;
+        this.startRecords = records;
+        this.startMillis = System.currentTimeMillis();
+        this.phase = "loading";
+    }
+
+    /**
+     * @param bytesRead 已从磁盘读取的字节数，压缩输入时是压缩数据的字节数
+     */
+    void update(long bytesRead, long records) {
+        this.bytesRead = bytesRead;
+        this.records = records;
+    }
+
+    /**
+     * 开始读取第 index 个文件，之前的文件都已读完；index 等于 total 表示全部读完。
+     */
+    void file(int index, int total, String name) {
+        this.files = total;
+        this.filesDone = index;
+        this.currentFile = name;
+    }
+
+    void addRows(LoaderTable table, long count) {
+        rows.addAndGet(table.ordinal(), count);
+    }
+
+    void finish(State state, String error) {
+        this.endMillis = System.currentTimeMillis();
+        this.error = error;
+        this.phase = state == State.SUCCEEDED ? "finished" : phase;
+        this.state = state;
+    }
+
+    State state() {
+        return state;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    boolean cancelRequested() {
+        return cancelRequested;
+    }
+
+    ImportStatus snapshot() {
+        ImportStatus status = new ImportStatus();
+        long end = state == State.RUNNING ? System.currentTimeMillis() : endMillis;
+        double elapsed = Math.max(1, end - startMillis) / 1000.0;
+        long bytesRead = this.bytesRead;
+        status.setState(state.name());
+        status.setPhase(phase);
+        status.setDataPath(dataPath);
+        status.setRecords(records);
+        status.setBytesRead(bytesRead);
+        status.setTotalBytes(totalBytes);
+        status.setFiles(files);
+        status.setFilesDone(filesDone);
+        status.setCurrentFile(currentFile);
+        status.setElapsedSeconds(elapsed);
+        status.setRecordsPerSecond((records - startRecords) / elapsed);
+        long bytesThisRun = bytesRead - startBytes;
+        if (state == State.RUNNING && bytesThisRun > 0) {
+            status.setEtaSeconds((long) ((totalBytes - bytesRead) / (bytesThisRun / elapsed)));
+        }
+        Map<String, Long> rowCounts = new LinkedHashMap<>();
+        Map<String, Double> rowRates = new LinkedHashMap<>();
+        for (LoaderTable table : LoaderTable.values()) {
+            long count = rows.get(table.ordinal());
+            rowCounts.put(table.tableName(), count);
+            rowRates.put(table.tableName(), count / elapsed);
+        }
+        status.setRows(rowCounts);
+        status.setRowsPerSecond(rowRates);
+        status.setError(error);
+        return status;
+    }
+}
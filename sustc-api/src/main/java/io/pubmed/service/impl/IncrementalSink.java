@@ -0,0 +1,217 @@
+package io.pubmed.service.impl;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * 增量导入使用的写入后端：文章按 id upsert，已存在文章的关联行（作者、关键词、期刊、出版类型、文章标识、引用、基金）
+ * 先删除再按新记录写入，因此同一份更新文件重复导入的结果不变。
+ * <p>
+ * 作者、关键词、期刊、出版类型和基金由 {@link RecordResolver#loadDictionaries} 从已有表中去重，这里只写入新条目。
+ * Keyword_Year_Count 在替换前后分别减去、加上这批文章的贡献；Article_Citation_Count 在替换前查出旧引用的贡献，
+ * 替换后与新引用相抵，每批一次计入并通知（{@link LoaderAggregates#OLD_CITATIONS}）。两张表上的触发器在导入事务中跳过。
+ * <p>
+ * 按年分区的 Article 表没有 (id) 上的唯一约束，无法 upsert，文章行和关联行一起先删除再插入，
+ * 创建日期改变的文章因此会移到新年份的分区。
+ */
+final class IncrementalSink implements LoaderSink {
+
+    /** 以 article_id 关联到文章、随文章一起替换的表 */
+    private static final LoaderTable[] ARTICLE_CHILDREN = {
+            LoaderTable.ARTICLE_AUTHORS,
+            LoaderTable.ARTICLE_JOURNAL,
+            LoaderTable.ARTICLE_KEYWORDS,
+            LoaderTable.ARTICLE_PUBLICATION_TYPES,
+            LoaderTable.ARTICLE_IDS,
+            LoaderTable.ARTICLE_GRANTS,
+            LoaderTable.ARTICLE_REFERENCES,
+    };
+
+    private final Connection con;
+    private final LoaderSink delegate;
+    private final PreparedStatement[] deletes;
+    private final PreparedStatement[] subtracts = new PreparedStatement[LoaderAggregates.SUBTRACT_ARTICLES.length];
+    private final PreparedStatement[] adds = new PreparedStatement[LoaderAggregates.ADD_ARTICLES.length];
+    private PreparedStatement oldCitations;
+    private PreparedStatement applyCitations;
+    /**
+     * 引用行的年份由记录给出，改动的文章整体替换，见 {@link LoaderSchema#LOADER_SETTING}。
+     * 只在当前事务内有效，连接来自连接池时不会影响之后的使用者。
+     */
+    private PreparedStatement trustYears;
+
+    /** 当前批次中写入的文章 */
+    private final List<Integer> articles = new ArrayList<>();
+    private final HashSet<Integer> articlesInBatch = new HashSet<>();
+
+    IncrementalSink(Connection con, LoaderMetrics metrics) throws SQLException {
+        this.con = con;
+        boolean partitioned = LoaderSchema.partitions(con) != null;
+        this.delegate = new JdbcBatchSink(con, partitioned ? EnumSet.noneOf(LoaderTable.class)
+                : EnumSet.of(LoaderTable.ARTICLE), metrics, null, false);
+        this.deletes = new PreparedStatement[ARTICLE_CHILDREN.length + (partitioned ? 1 : 0)];
+        try {
+            for (int i = 0; i < ARTICLE_CHILDREN.length; i++) {
+                deletes[i] = con.prepareStatement(
+                        "delete from " + ARTICLE_CHILDREN[i].tableName() + " where article_id = any(?)");
+            }
+            if (partitioned) {
+                // 关联行删除之后才能删除文章行
+                deletes[ARTICLE_CHILDREN.length] = con.prepareStatement("delete from article where id = any(?)");
+            }
+            trustYears = con.prepareStatement(
+                    "select set_config('" + LoaderSchema.LOADER_SETTING + "', 'on', true)");
+            for (int i = 0; i < subtracts.length; i++) {
+                subtracts[i] = con.prepareStatement(LoaderAggregates.SUBTRACT_ARTICLES[i]);
+            }
+            for (int i = 0; i < adds.length; i++) {
+                adds[i] = con.prepareStatement(LoaderAggregates.ADD_ARTICLES[i]);
+            }
+            oldCitations = con.prepareStatement(LoaderAggregates.OLD_CITATIONS);
+            applyCitations = con.prepareStatement(LoaderAggregates.APPLY_CITATIONS);
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void article(int id, String title, String pubModel, LocalDate created, LocalDate completed)
+            throws SQLException {
+        if (!articlesInBatch.add(id)) {
+            // 同一篇文章在批次内再次出现时先写出之前的版本，再由这一版本整体替换
+            flush();
+            articlesInBatch.add(id);
+        }
+        articles.add(id);
+        delegate.article(id, title, pubModel, created, completed);
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        if (articles.isEmpty()) {
+            delegate.flush();
+            return;
+        }
+        trustYears.execute();
+        Array ids = con.createArrayOf("integer", articles.toArray());
+        // 删除旧关联前，文章行和关联行仍是旧版本
+        executeAll(subtracts, ids);
+        oldCitations.setArray(1, ids);
+        try (ResultSet rs = oldCitations.executeQuery()) {
+            rs.next();
+            for (int i = 1; i <= 3; i++) {
+                applyCitations.setArray(i, rs.getArray(i));
+            }
+        }
+        executeAll(deletes, ids);
+        delegate.flush();
+        executeAll(adds, ids);
+        applyCitations.setArray(4, ids);
+        applyCitations.execute();
+        ids.free();
+        articles.clear();
+        articlesInBatch.clear();
+    }
+
+    private static void executeAll(PreparedStatement[] statements, Array ids) throws SQLException {
+        for (PreparedStatement ps : statements) {
+            ps.setArray(1, ids);
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void author(int id, String foreName, String lastName, String initials, boolean collective,
+                       String affiliation) throws SQLException {
+        delegate.author(id, foreName, lastName, initials, collective, affiliation);
+    }
+
+    @Override
+    public void articleAuthor(int articleId, int authorId) throws SQLException {
+        delegate.articleAuthor(articleId, authorId);
+    }
+
+    @Override
+    public void journal(String id, String country, String issn, String title, String volume, String issue)
+            throws SQLException {
+        delegate.journal(id, country, issn, title, volume, issue);
+    }
+
+    @Override
+    public void articleJournal(int articleId, String journalId) throws SQLException {
+        delegate.articleJournal(articleId, journalId);
+    }
+
+    @Override
+    public void keyword(int id, String keyword) throws SQLException {
+        delegate.keyword(id, keyword);
+    }
+
+    @Override
+    public void articleKeyword(int articleId, int keywordId) throws SQLException {
+        delegate.articleKeyword(articleId, keywordId);
+    }
+
+    @Override
+    public void publicationType(String id, String name) throws SQLException {
+        delegate.publicationType(id, name);
+    }
+
+    @Override
+    public void articlePublicationType(int articleId, String pubTypeId) throws SQLException {
+        delegate.articlePublicationType(articleId, pubTypeId);
+    }
+
+    @Override
+    public void articleId(int id, int articleId, String type, String identifier) throws SQLException {
+        delegate.articleId(id, articleId, type, identifier);
+    }
+
+    @Override
+    public void grant(int id, String grantId, String acronym, String agency, String country) throws SQLException {
+        delegate.grant(id, grantId, acronym, agency, country);
+    }
+
+    @Override
+    public void articleGrant(int articleId, int grantId) throws SQLException {
+        delegate.articleGrant(articleId, grantId);
+    }
+
+    @Override
+    public void reference(int articleId, int referenceId, int citingYear) throws SQLException {
+        delegate.reference(articleId, referenceId, citingYear);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException first = null;
+        for (PreparedStatement[] statements : List.of(deletes, subtracts, adds,
+                new PreparedStatement[]{oldCitations, applyCitations, trustYears})) {
+            for (PreparedStatement ps : statements) {
+                if (ps == null) {
+                    continue;
+                }
+                try {
+                    ps.close();
+                } catch (SQLException e) {
+                    first = e;
+                }
+            }
+        }
+        if (delegate != null) {
+            delegate.close();
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+}
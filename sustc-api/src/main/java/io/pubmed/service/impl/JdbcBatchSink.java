@@ -0,0 +1,236 @@
+package io.pubmed.service.impl;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 基于 {@link PreparedStatement#addBatch()} 的写入后端，每张表一个预编译语句。
+ */
+class JdbcBatchSink implements LoaderSink {
+
+    private final PreparedStatement[] stmt = new PreparedStatement[LoaderTable.values().length];
+    /** 各表 batch 中尚未执行的行数 */
+    private final int[] pending = new int[LoaderTable.values().length];
+    private final LoaderMetrics metrics;
+    /** 不为 null 时每张表的 batch 达到目标行数就单独执行 */
+    private final AdaptiveFlush policy;
+    /** 为 true 时单独执行一张表之前先执行它之前的表，表上已有外键时需要 */
+    private final boolean parentsFirst;
+
+    JdbcBatchSink(Connection con, LoaderMetrics metrics, AdaptiveFlush policy, boolean parentsFirst)
+            throws SQLException {
+        this(con, EnumSet.noneOf(LoaderTable.class), metrics, policy, parentsFirst);
+    }
+
+    /**
+     * @param upserts 使用 {@link LoaderTable#upsertSql()} 写入的表，已存在的行会被覆盖
+     */
+    JdbcBatchSink(Connection con, Set<LoaderTable> upserts, LoaderMetrics metrics, AdaptiveFlush policy,
+                  boolean parentsFirst) throws SQLException {
+        this.metrics = metrics;
+        this.policy = policy;
+        this.parentsFirst = parentsFirst;
+        try {
+            for (LoaderTable table : LoaderTable.values()) {
+                stmt[table.ordinal()] = con.prepareStatement(
+                        upserts.contains(table) ? table.upsertSql() : table.insertSql());
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private PreparedStatement of(LoaderTable table) throws SQLException {
+        int i = table.ordinal();
+        if (policy != null && pending[i] >= policy.target(i)) {
+            for (LoaderTable t : LoaderTable.values()) {
+                if (t == table || parentsFirst && t.ordinal() < i) {
+                    flush(t);
+                }
+            }
+        }
+        pending[i]++;
+        return stmt[i];
+    }
+
+    private static void setDate(PreparedStatement ps, int index, LocalDate date) throws SQLException {
+        if (date == null) {
+            ps.setNull(index, Types.DATE);
+        } else {
+            ps.setDate(index, Date.valueOf(date));
+        }
+    }
+
+    @Override
+    public void article(int id, String title, String pubModel, LocalDate created, LocalDate completed)
+            throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE);
+        ps.setInt(1, id);
+        ps.setString(2, title);
+        ps.setString(3, pubModel);
+        setDate(ps, 4, created);
+        setDate(ps, 5, completed);
+        ps.addBatch();
+    }
+
+    @Override
+    public void author(int id, String foreName, String lastName, String initials, boolean collective,
+                       String affiliation) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.AUTHORS);
+        ps.setInt(1, id);
+        ps.setString(2, foreName);
+        ps.setString(3, lastName);
+        ps.setString(4, initials);
+        ps.setBoolean(5, collective);
+        ps.setString(6, affiliation);
+        ps.addBatch();
+    }
+
+    @Override
+    public void articleAuthor(int articleId, int authorId) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE_AUTHORS);
+        ps.setInt(1, articleId);
+        ps.setInt(2, authorId);
+        ps.addBatch();
+    }
+
+    @Override
+    public void journal(String id, String country, String issn, String title, String volume, String issue)
+            throws SQLException {
+        PreparedStatement ps = of(LoaderTable.JOURNAL);
+        ps.setString(1, id);
+        ps.setString(2, country);
+        ps.setString(3, issn);
+        ps.setString(4, title);
+        ps.setString(5, volume);
+        ps.setString(6, issue);
+        ps.addBatch();
+    }
+
+    @Override
+    public void articleJournal(int articleId, String journalId) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE_JOURNAL);
+        ps.setString(1, journalId);
+        ps.setInt(2, articleId);
+        ps.addBatch();
+    }
+
+    @Override
+    public void keyword(int id, String keyword) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.KEYWORDS);
+        ps.setInt(1, id);
+        ps.setString(2, keyword);
+        ps.addBatch();
+    }
+
+    @Override
+    public void articleKeyword(int articleId, int keywordId) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE_KEYWORDS);
+        ps.setInt(1, articleId);
+        ps.setInt(2, keywordId);
+        ps.addBatch();
+    }
+
+    @Override
+    public void publicationType(String id, String name) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.PUBLICATION_TYPES);
+        ps.setString(1, id);
+        ps.setString(2, name);
+        ps.addBatch();
+    }
+
+    @Override
+    public void articlePublicationType(int articleId, String pubTypeId) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE_PUBLICATION_TYPES);
+        ps.setInt(1, articleId);
+        ps.setString(2, pubTypeId);
+        ps.addBatch();
+    }
+
+    @Override
+    public void articleId(int id, int articleId, String type, String identifier) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE_IDS);
+        ps.setInt(1, id);
+        ps.setInt(2, articleId);
+        ps.setString(3, type);
+        ps.setString(4, identifier);
+        ps.addBatch();
+    }
+
+    @Override
+    public void grant(int id, String grantId, String acronym, String agency, String country) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.GRANT_INFO);
+        ps.setInt(1, id);
+        ps.setString(2, grantId);
+        ps.setString(3, acronym);
+        ps.setString(4, agency);
+        ps.setString(5, country);
+        ps.addBatch();
+    }
+
+    @Override
+    public void articleGrant(int articleId, int grantId) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE_GRANTS);
+        ps.setInt(1, articleId);
+        ps.setInt(2, grantId);
+        ps.addBatch();
+    }
+
+    @Override
+    public void reference(int articleId, int referenceId, int citingYear) throws SQLException {
+        PreparedStatement ps = of(LoaderTable.ARTICLE_REFERENCES);
+        ps.setInt(1, articleId);
+        ps.setInt(2, referenceId);
+        ps.setInt(3, citingYear);
+        ps.addBatch();
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        for (LoaderTable table : LoaderTable.values()) {
+            flush(table);
+        }
+    }
+
+    private void flush(LoaderTable table) throws SQLException {
+        int i = table.ordinal();
+        if (pending[i] == 0) {
+            return;
+        }
+        long t0 = System.nanoTime();
+        int rows = stmt[i].executeBatch().length;
+        long nanos = System.nanoTime() - t0;
+        pending[i] = 0;
+        metrics.tableFlushed(table.tableName(), rows, 0, nanos);
+        if (policy != null) {
+            policy.flushed(i, rows, nanos);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException first = null;
+        for (PreparedStatement ps : stmt) {
+            if (ps == null) {
+                continue;
+            }
+            try {
+                ps.close();
+            } catch (SQLException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+}
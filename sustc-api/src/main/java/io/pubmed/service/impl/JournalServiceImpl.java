@@ -8,6 +8,8 @@ import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * JournalService 的实现类，使用引用计数表优化影响因子计算。
@@ -40,15 +42,18 @@ public class JournalServiceImpl implements JournalService {
      */
     @Override
     public double getImpactFactor(String journal_id, int year) {
+        // 前两年写成日期范围，Article 按年分区时只扫描这两年的分区
         String sqlArticles = "SELECT a.id FROM Article a " +
                 "JOIN Article_Journal aj ON a.id = aj.article_id " +
                 "JOIN Journal j ON aj.journal_id = j.id " +
-                "WHERE j.id=? AND EXTRACT(YEAR FROM a.date_created)::int IN (?, ?)";
+                "WHERE j.id=? " +
+                "AND a.date_created >= make_date(?, 1, 1) AND a.date_created < make_date(? + 1, 1, 1)";
 
         String sqlCountArticles = "SELECT COUNT(*) AS total_articles FROM Article a " +
                 "JOIN Article_Journal aj ON a.id = aj.article_id " +
                 "JOIN Journal j ON aj.journal_id = j.id " +
-                "WHERE j.id = ? AND EXTRACT(YEAR FROM a.date_created)::int IN (?, ?)";
+                "WHERE j.id = ? " +
+                "AND a.date_created >= make_date(?, 1, 1) AND a.date_created < make_date(? + 1, 1, 1)";
 
         double impactFactor = 0.0;
         int totalCitations = 0;
@@ -62,10 +67,14 @@ public class JournalServiceImpl implements JournalService {
             stmtArticles.setInt(3, year - 1);
             ResultSet rsArticles = stmtArticles.executeQuery();
 
+            List<Integer> articleIds = new ArrayList<>();
             while (rsArticles.next()) {
-                int articleId = rsArticles.getInt("id");
-                // 使用 CitationCountManager 获取引用次数
-                totalCitations += citationCountManager.getCitationsInYear(articleId, year);
+                articleIds.add(rsArticles.getInt("id"));
+            }
+            // 使用 CitationCountManager 一次取得所有文章的引用次数
+            for (int citations : citationCountManager.getCitationsInYear(
+                    articleIds.stream().mapToInt(Integer::intValue).toArray(), year)) {
+                totalCitations += citations;
             }
 
             // 获取前两年发表的文章数量
@@ -110,7 +119,7 @@ public class JournalServiceImpl implements JournalService {
                 "  AND article_id IN ( " +
                 "      SELECT a.id " +
                 "      FROM Article a " +
-                "      WHERE EXTRACT(YEAR FROM a.date_completed)::int >= ? " +
+                "      WHERE a.date_completed >= make_date(?, 1, 1) " +
                 "  )";
         String deleteInsertedJournal = "DELETE FROM Journal WHERE id = ?"; // 删除插入的期刊
         String revertArticleJournal = "UPDATE Article_Journal " +
@@ -119,7 +128,7 @@ public class JournalServiceImpl implements JournalService {
                 "  AND article_id IN ( " +
                 "      SELECT a.id " +
                 "      FROM Article a " +
-                "      WHERE EXTRACT(YEAR FROM a.date_completed)::int >= ? " +
+                "      WHERE a.date_completed >= make_date(?, 1, 1) " +
                 "  )";  // 恢复原来的 journal_id
 
         Connection conn = null;
@@ -141,7 +150,7 @@ public class JournalServiceImpl implements JournalService {
             stmtUpdate = conn.prepareStatement(updateArticleJournal);
             stmtUpdate.setString(1, new_id);          // SET journal_id = ?
             stmtUpdate.setString(2, journal.getId()); // WHERE journal_id = ?
-            stmtUpdate.setInt(3, year);                // AND EXTRACT(YEAR FROM a.date_completed) >= ?
+            stmtUpdate.setInt(3, year);                // AND a.date_completed >= make_date(?, 1, 1)
             int rowsUpdated = stmtUpdate.executeUpdate();
 
             // 记录更新结果
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
@@ -23,6 +24,32 @@ public class KeywordServiceImpl implements KeywordService {
     @Autowired
     private DataSource dataSource;
 
+    /**
+     * Keyword_Year_Count 由导入生成并由触发器维护，启动时只检查表和触发器是否都在；
+     * 数据库由旧版本导入、缺少其中之一时统计一次。
+     */
+    @PostConstruct
+    public void init() {
+        try (Connection conn = dataSource.getConnection()) {
+            if (LoaderAggregates.keywordsMaintained(conn)) {
+                return;
+            }
+            conn.setAutoCommit(false);
+            try {
+                LoaderAggregates.rebuildKeywords(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            log.info("Keyword_Year_Count built from article_keywords.");
+        } catch (SQLException e) {
+            log.error("Error building keyword year counts.", e);
+        }
+    }
+
     /**
      * 根据给定关键字查询过去一年的发表文章数量，并按年份降序排列。
      *
@@ -31,13 +58,13 @@ public class KeywordServiceImpl implements KeywordService {
      */
     @Override
     public int[] getArticleCountByKeywordInPastYears(String keyword) {
-        String sql = "SELECT EXTRACT(YEAR FROM a.date_completed) AS year, COUNT(*) AS article_count " +
-                "FROM Article a " +
-                "JOIN Article_Keywords ak ON a.id = ak.article_id " +
-                "JOIN Keywords k ON ak.keyword_id = k.id " +
-                "WHERE k.keyword = ? "  +
-                "GROUP BY year " +
-                "ORDER BY year DESC";
+        // 读取导入时生成的 Keyword_Year_Count（见 LoaderAggregates），年份 0 表示没有完成日期，与原先的 NULL 年份一样排在最前
+        String sql = "SELECT kc.year, SUM(kc.article_count) AS article_count " +
+                "FROM Keyword_Year_Count kc " +
+                "JOIN Keywords k ON kc.keyword_id = k.id " +
+                "WHERE k.keyword = ? " +
+                "GROUP BY kc.year " +
+                "ORDER BY NULLIF(kc.year, 0) DESC NULLS FIRST";
 
         List<Integer> articleCounts = new ArrayList<>();
 
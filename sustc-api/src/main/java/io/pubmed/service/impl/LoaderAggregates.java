@@ -0,0 +1,455 @@
+package io.pubmed.service.impl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 导入时顺带生成的统计表，服务查询时直接读取，不必在请求时聚合大表：
+ * <ul>
+ *     <li>Article_Citation_Count：被引用文章 × 引用文章创建年份 -> 引用次数，供 {@link CitationCountManager} 使用；</li>
+ *     <li>Keyword_Year_Count：关键词 × 文章完成年份 -> 文章数，供 {@link KeywordServiceImpl} 使用，
+ *     没有完成日期的文章记在年份 0 下。</li>
+ * </ul>
+ * 从头导入时由 {@link RecordResolver} 在内存中累计（{@link YearCounts}），结束时一次性写入；续传时内存中的累计不完整，
+ * 结束时用 {@link #rebuild} 从表中重新统计。
+ * <p>
+ * Keyword_Year_Count 建好后在 article_keywords 和 Article 上安装语句级触发器（{@link #CREATE_KEYWORD_TRIGGERS}），
+ * 其他程序写入关键词、修改完成日期时随之更新；增量导入由 {@link IncrementalSink} 按批次先减去被替换文章的旧贡献、
+ * 再加上新贡献。
+ * <p>
+ * Article_Citation_Count 建好后在 article_references 上安装语句级触发器（{@link #CREATE_CITATION_TRIGGERS}），
+ * 按引用行的 citing_year 归年，该列由 {@link LoaderSchema#CITING_YEAR_TRIGGERS} 从 Article.date_created 填入并随之改写。
+ * 此后插入、修改、删除 article_references 或修改 Article.date_created，不论来自增量导入、其他程序还是手工操作，
+ * 计数都随之更新，并通过 NOTIFY 通知各个应用实例更新内存中的索引；只有按年分区时写入方要给出正确的 citing_year，
+ * 否则写入被拒绝。直接修改 Article_Citation_Count 不经过这些触发器。
+ * 导入时重建表会连同触发器一起删除，大批量写入因此不经过触发器，写完后再装回。
+ */
+final class LoaderAggregates {
+
+    static final String CITATION_TABLE = "article_citation_count";
+    /** 统计表被原地修改时递增的序列，与表的 relfilenode 一起构成 {@link #citationVersion} */
+    static final String CITATION_VERSION_SEQUENCE = "article_citation_count_version";
+    /** 计数变化的通知频道，负载见 {@link #CREATE_CITATION_TRIGGERS} */
+    static final String CITATION_CHANNEL = "article_citation_count";
+
+    /**
+     * article_references 上维护 Article_Citation_Count 的触发器。每条语句结束后从变化前后的行（transition table）
+     * 按 (被引用文章, 引用年份) 汇总增减，累加到表中，并发出通知，负载为
+     * {@code "<事务 xid> <序号> <来源> <变化>"}：变化是逗号分隔的 {@code 文章:年份:增减}，过长时拆成多条通知；
+     * 清空 article_references 时计数表一起清空，变化为 {@code reload}。
+     * 来源为 {@code -}，{@link CitationCountManager} 自己修改计数时填自己的实例 id。
+     * 序号取自 {@link #CITATION_VERSION_SEQUENCE}，既使同一事务中内容相同的通知不被合并，也使索引快照失效。
+     * 累加和通知由 article_citation_count_apply(文章[], 年份[], 增减[]) 完成。
+     * <p>
+     * JDBC 批量写入时每行都是一条语句，逐行汇总、累加和通知代价太高；增量导入的事务设置了 {@link LoaderSchema#LOADER_SETTING}，
+     * 触发器跳过（清空除外），由 {@link #OLD_CITATIONS} 和 {@link #APPLY_CITATIONS} 按批次维护，每批只发一组通知。
+     */
+    static final String CREATE_CITATION_TRIGGERS = """
+            CREATE SEQUENCE IF NOT EXISTS article_citation_count_version;
+            CREATE OR REPLACE FUNCTION article_citation_count_notify(changes text) RETURNS void
+            LANGUAGE sql AS $$
+                SELECT pg_notify('article_citation_count',
+                        txid_current() || ' ' || nextval('article_citation_count_version') || ' - ' || changes)
+            $$;
+            CREATE OR REPLACE FUNCTION article_citation_count_apply(ids int[], years int[], deltas int[]) RETURNS void
+            LANGUAGE plpgsql AS $$
+            DECLARE
+                item    text;
+                changes text := '';
+            BEGIN
+                IF ids IS NULL THEN
+                    RETURN;
+                END IF;
+                INSERT INTO article_citation_count (article_id, citation_year, citation_count)
+                SELECT * FROM unnest(ids, years, deltas)
+                ON CONFLICT (article_id, citation_year)
+                DO UPDATE SET citation_count = article_citation_count.citation_count + excluded.citation_count;
+                IF 0 > ANY (deltas) THEN
+                    DELETE FROM article_citation_count c USING unnest(ids, years) u (article_id, year)
+                    WHERE c.article_id = u.article_id AND c.citation_year = u.year AND c.citation_count <= 0;
+                END IF;
+                -- 通知负载不能超过 8000 字节
+                FOR i IN 1 .. array_length(ids, 1) LOOP
+                    item := ids[i] || ':' || years[i] || ':' || deltas[i];
+                    IF length(changes) + length(item) > 7800 THEN
+                        PERFORM article_citation_count_notify(changes);
+                        changes := '';
+                    END IF;
+                    changes := changes || CASE WHEN changes = '' THEN '' ELSE ',' END || item;
+                END LOOP;
+                PERFORM article_citation_count_notify(changes);
+            END
+            $$;
+            CREATE OR REPLACE FUNCTION article_citation_count_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+            DECLARE
+                ids     int[];
+                years   int[];
+                deltas  int[];
+            BEGIN
+                IF TG_OP = 'TRUNCATE' THEN
+                    TRUNCATE article_citation_count;
+                    PERFORM article_citation_count_notify('reload');
+                    RETURN NULL;
+                ELSIF current_setting('pubmed.loader', true) = 'on' THEN
+                    RETURN NULL;
+                ELSIF TG_OP = 'INSERT' THEN
+                    SELECT array_agg(reference_id), array_agg(citing_year), array_agg(n) INTO ids, years, deltas
+                    FROM (SELECT reference_id, citing_year, COUNT(*)::int AS n FROM new_rows GROUP BY 1, 2) d;
+                ELSIF TG_OP = 'DELETE' THEN
+                    SELECT array_agg(reference_id), array_agg(citing_year), array_agg(n) INTO ids, years, deltas
+                    FROM (SELECT reference_id, citing_year, -COUNT(*)::int AS n FROM old_rows GROUP BY 1, 2) d;
+                ELSE
+                    SELECT array_agg(reference_id), array_agg(citing_year), array_agg(n) INTO ids, years, deltas
+                    FROM (SELECT reference_id, citing_year, SUM(n)::int AS n
+                          FROM (SELECT reference_id, citing_year, 1 AS n FROM new_rows
+                                UNION ALL SELECT reference_id, citing_year, -1 FROM old_rows) r
+                          GROUP BY 1, 2 HAVING SUM(n) <> 0) d;
+                END IF;
+                PERFORM article_citation_count_apply(ids, years, deltas);
+                RETURN NULL;
+            END
+            $$;
+            DROP TRIGGER IF EXISTS article_citation_count_insert ON article_references;
+            DROP TRIGGER IF EXISTS article_citation_count_update ON article_references;
+            DROP TRIGGER IF EXISTS article_citation_count_delete ON article_references;
+            DROP TRIGGER IF EXISTS article_citation_count_truncate ON article_references;
+            CREATE TRIGGER article_citation_count_insert AFTER INSERT ON article_references
+                REFERENCING NEW TABLE AS new_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION article_citation_count_sync();
+            CREATE TRIGGER article_citation_count_update AFTER UPDATE ON article_references
+                REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION article_citation_count_sync();
+            CREATE TRIGGER article_citation_count_delete AFTER DELETE ON article_references
+                REFERENCING OLD TABLE AS old_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION article_citation_count_sync();
+            CREATE TRIGGER article_citation_count_truncate AFTER TRUNCATE ON article_references
+                FOR EACH STATEMENT EXECUTE FUNCTION article_citation_count_sync();
+            """;
+    static final String KEYWORD_TABLE = "keyword_year_count";
+
+    /**
+     * 维护 Keyword_Year_Count 的触发器，与表的定义一致：只统计能关联到 Article 的 article_keywords 行，
+     * 年份取该文章 date_completed 的年份，没有时为 0。
+     * <ul>
+     *     <li>article_keywords 增删改时，按关联到的文章加减；</li>
+     *     <li>Article 插入、删除时加减已有关键词行的贡献（按年分区时没有外键，关键词行可以先于文章存在或留在文章之后）；</li>
+     *     <li>Article 的 date_completed 跨年时，把它的关键词从旧年份移到新年份；</li>
+     *     <li>清空任一张表时统计表一起清空，再从剩下的数据重新统计。</li>
+     * </ul>
+     * JDBC 批量写入时每行都是一条语句，逐条触发代价太高；增量导入的事务设置了 {@link LoaderSchema#LOADER_SETTING}，
+     * 触发器跳过，由 {@link #SUBTRACT_ARTICLES} 和 {@link #ADD_ARTICLES} 按批次维护。
+     */
+    static final String CREATE_KEYWORD_TRIGGERS = """
+            CREATE OR REPLACE FUNCTION keyword_year_count_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+            DECLARE
+                row_ids   int[];                                            -- 变化行的文章 id
+                row_keys  int[];                                            -- article_keywords 上为关键词 id，Article 上为完成年份
+                row_signs int[];
+                ids       int[];
+                years     int[];
+                deltas    int[];
+            BEGIN
+                IF current_setting('pubmed.loader', true) = 'on' THEN
+                    RETURN NULL;
+                ELSIF TG_OP = 'TRUNCATE' THEN
+                    TRUNCATE keyword_year_count;
+                    INSERT INTO keyword_year_count (keyword_id, year, article_count)
+                    SELECT ak.keyword_id, COALESCE(EXTRACT(YEAR FROM a.date_completed)::int, 0), COUNT(*)
+                    FROM article_keywords ak JOIN article a ON ak.article_id = a.id GROUP BY 1, 2;
+                    RETURN NULL;
+                ELSIF TG_TABLE_NAME = 'article_keywords' THEN
+                    IF TG_OP <> 'DELETE' THEN
+                        SELECT array_agg(article_id), array_agg(keyword_id), array_agg(1)
+                        INTO row_ids, row_keys, row_signs FROM new_rows;
+                    END IF;
+                    IF TG_OP <> 'INSERT' THEN
+                        SELECT row_ids || array_agg(article_id), row_keys || array_agg(keyword_id), row_signs || array_agg(-1)
+                        INTO row_ids, row_keys, row_signs FROM old_rows;
+                    END IF;
+                    SELECT array_agg(keyword_id), array_agg(year), array_agg(n) INTO ids, years, deltas
+                    FROM (SELECT r.key AS keyword_id, COALESCE(EXTRACT(YEAR FROM a.date_completed)::int, 0) AS year,
+                                 SUM(r.sign)::int AS n
+                          FROM unnest(row_ids, row_keys, row_signs) r (id, key, sign) JOIN article a ON a.id = r.id
+                          GROUP BY 1, 2 HAVING SUM(r.sign) <> 0) d;
+                ELSE
+                    IF TG_OP <> 'DELETE' THEN
+                        SELECT array_agg(id), array_agg(COALESCE(EXTRACT(YEAR FROM date_completed)::int, 0)), array_agg(1)
+                        INTO row_ids, row_keys, row_signs FROM new_rows;
+                    END IF;
+                    IF TG_OP <> 'INSERT' THEN
+                        SELECT row_ids || array_agg(id),
+                               row_keys || array_agg(COALESCE(EXTRACT(YEAR FROM date_completed)::int, 0)),
+                               row_signs || array_agg(-1)
+                        INTO row_ids, row_keys, row_signs FROM old_rows;
+                    END IF;
+                    SELECT array_agg(keyword_id), array_agg(year), array_agg(n) INTO ids, years, deltas
+                    FROM (SELECT ak.keyword_id, r.key AS year, SUM(r.sign)::int AS n
+                          FROM unnest(row_ids, row_keys, row_signs) r (id, key, sign)
+                          JOIN article_keywords ak ON ak.article_id = r.id
+                          GROUP BY 1, 2 HAVING SUM(r.sign) <> 0) d;
+                END IF;
+                IF ids IS NULL THEN
+                    RETURN NULL;
+                END IF;
+                INSERT INTO keyword_year_count (keyword_id, year, article_count)
+                SELECT * FROM unnest(ids, years, deltas)
+                ON CONFLICT (keyword_id, year)
+                DO UPDATE SET article_count = keyword_year_count.article_count + excluded.article_count;
+                DELETE FROM keyword_year_count c USING unnest(ids, years) u (keyword_id, year)
+                WHERE c.keyword_id = u.keyword_id AND c.year = u.year AND c.article_count <= 0;
+                RETURN NULL;
+            END
+            $$;
+            DROP TRIGGER IF EXISTS keyword_year_count_insert ON article_keywords;
+            DROP TRIGGER IF EXISTS keyword_year_count_update ON article_keywords;
+            DROP TRIGGER IF EXISTS keyword_year_count_delete ON article_keywords;
+            DROP TRIGGER IF EXISTS keyword_year_count_truncate ON article_keywords;
+            DROP TRIGGER IF EXISTS keyword_year_count_insert ON article;
+            DROP TRIGGER IF EXISTS keyword_year_count_update ON article;
+            DROP TRIGGER IF EXISTS keyword_year_count_delete ON article;
+            DROP TRIGGER IF EXISTS keyword_year_count_truncate ON article;
+            CREATE TRIGGER keyword_year_count_insert AFTER INSERT ON article_keywords
+                REFERENCING NEW TABLE AS new_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            CREATE TRIGGER keyword_year_count_update AFTER UPDATE ON article_keywords
+                REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            CREATE TRIGGER keyword_year_count_delete AFTER DELETE ON article_keywords
+                REFERENCING OLD TABLE AS old_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            CREATE TRIGGER keyword_year_count_truncate AFTER TRUNCATE ON article_keywords
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            CREATE TRIGGER keyword_year_count_insert AFTER INSERT ON article
+                REFERENCING NEW TABLE AS new_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            CREATE TRIGGER keyword_year_count_update AFTER UPDATE ON article
+                REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            CREATE TRIGGER keyword_year_count_delete AFTER DELETE ON article
+                REFERENCING OLD TABLE AS old_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            CREATE TRIGGER keyword_year_count_truncate AFTER TRUNCATE ON article
+                FOR EACH STATEMENT EXECUTE FUNCTION keyword_year_count_sync();
+            """;
+
+    static final String CREATE_CITATION_TABLE = """
+            CREATE TABLE Article_Citation_Count (
+                article_id     INT NOT NULL,                                -- 被引用的文章 ID
+                citation_count INT NOT NULL DEFAULT 0,                      -- 被引用的次数
+                citation_year  INT NOT NULL                                 -- 引用发生的年份
+            );
+            """;
+
+    static final String CREATE_KEYWORD_TABLE = """
+            CREATE TABLE Keyword_Year_Count (
+                keyword_id    INT NOT NULL,
+                year          INT NOT NULL,                                 -- 文章完成年份，没有完成日期时为 0
+                article_count INT NOT NULL
+            );
+            """;
+
+    static final String CITATION_PRIMARY_KEY =
+            "ALTER TABLE Article_Citation_Count ADD PRIMARY KEY (article_id, citation_year)";
+    static final String KEYWORD_PRIMARY_KEY = "ALTER TABLE Keyword_Year_Count ADD PRIMARY KEY (keyword_id, year)";
+
+    static final String COPY_CITATIONS =
+            "COPY article_citation_count (article_id, citation_year, citation_count) FROM STDIN (FORMAT binary)";
+    static final String COPY_KEYWORDS =
+            "COPY keyword_year_count (keyword_id, year, article_count) FROM STDIN (FORMAT binary)";
+
+    /** 按 (被引用文章 | 关键词, 年份) 聚合，%s 处为 where 子句，为空时统计全表 */
+    private static final String CITATIONS_OF = "SELECT ar.reference_id, ar.citing_year, COUNT(*)"
+            + " FROM article_references ar %s GROUP BY ar.reference_id, ar.citing_year";
+    private static final String KEYWORDS_OF = "SELECT ak.keyword_id,"
+            + " COALESCE(EXTRACT(YEAR FROM a.date_completed)::int, 0), COUNT(*)"
+            + " FROM article_keywords ak JOIN Article a ON ak.article_id = a.id %s"
+            + " GROUP BY ak.keyword_id, COALESCE(EXTRACT(YEAR FROM a.date_completed)::int, 0)";
+
+    /**
+     * 增量导入时，在删除一批文章的旧关联之前减去它们的贡献，参数为文章 id 数组。
+     * 增量导入的事务中 {@link #CREATE_KEYWORD_TRIGGERS} 不起作用，由这些语句按批次维护 Keyword_Year_Count；
+     * Article_Citation_Count 见 {@link #OLD_CITATIONS}。
+     */
+    static final String[] SUBTRACT_ARTICLES = {
+            "UPDATE keyword_year_count c SET article_count = c.article_count - d.n"
+                    + " FROM (" + KEYWORDS_OF.formatted("WHERE ak.article_id = ANY(?)") + ") d (keyword_id, year, n)"
+                    + " WHERE c.keyword_id = d.keyword_id AND c.year = d.year",
+            "DELETE FROM keyword_year_count WHERE article_count <= 0 AND keyword_id IN"
+                    + " (SELECT keyword_id FROM article_keywords WHERE article_id = ANY(?))",
+    };
+
+    /**
+     * 增量导入时，在写入一批文章的新关联之后加上它们的贡献，参数为文章 id 数组。
+     */
+    static final String[] ADD_ARTICLES = {
+            "INSERT INTO keyword_year_count (keyword_id, year, article_count) "
+                    + KEYWORDS_OF.formatted("WHERE ak.article_id = ANY(?)")
+                    + " ON CONFLICT (keyword_id, year) DO UPDATE"
+                    + " SET article_count = keyword_year_count.article_count + excluded.article_count",
+    };
+
+    /**
+     * 增量导入时，在删除一批文章的旧引用行之前查出它们的贡献，参数为文章 id 数组，
+     * 结果为 (被引用文章[], 年份[], 负的次数[]) 三个数组，没有引用行时为 null。
+     */
+    static final String OLD_CITATIONS = "SELECT array_agg(d.reference_id), array_agg(d.citing_year), array_agg(-d.n::int)"
+            + " FROM (" + CITATIONS_OF.formatted("WHERE ar.article_id = ANY(?)") + ") d (reference_id, citing_year, n)";
+
+    /**
+     * 增量导入时，在写入一批文章的新引用行之后，把 {@link #OLD_CITATIONS} 查出的旧贡献（前三个参数）
+     * 与新贡献（第四个参数为文章 id 数组）相抵，一次计入 Article_Citation_Count，只通知有变化的计数。
+     */
+    static final String APPLY_CITATIONS = "SELECT article_citation_count_apply(array_agg(d.reference_id),"
+            + " array_agg(d.citing_year), array_agg(d.n))"
+            + " FROM (SELECT r.reference_id, r.citing_year, SUM(r.n)::int FROM ("
+            + "SELECT * FROM unnest(?::int[], ?::int[], ?::int[]) UNION ALL "
+            + CITATIONS_OF.formatted("WHERE ar.article_id = ANY(?)") + ") r (reference_id, citing_year, n)"
+            + " GROUP BY r.reference_id, r.citing_year HAVING SUM(r.n) <> 0) d (reference_id, citing_year, n)";
+
+    private LoaderAggregates() {
+    }
+
+    /**
+     * 删除旧表并建立不带主键的空表，与导入表的重建在同一事务中执行。
+     */
+    static void createTables(Statement stmt) throws SQLException {
+        stmt.execute("drop table if exists article_citation_count;");
+        stmt.execute("drop table if exists keyword_year_count;");
+        stmt.execute(CREATE_CITATION_TABLE);
+        stmt.execute(CREATE_KEYWORD_TABLE);
+        bumpCitationVersion(stmt);
+    }
+
+    /**
+     * 把从头导入时累计的结果 COPY 到 {@link #createTables} 建立的空表，再建立主键。
+     */
+    static void write(Connection con, YearCounts citations, YearCounts keywords) throws SQLException {
+        citations.copyIn(con, COPY_CITATIONS);
+        keywords.copyIn(con, COPY_KEYWORDS);
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(CITATION_PRIMARY_KEY);
+            stmt.execute(KEYWORD_PRIMARY_KEY);
+            createCitationTriggers(stmt);
+            stmt.execute(CREATE_KEYWORD_TRIGGERS);
+        }
+    }
+
+    /**
+     * 从关联表重新统计两张表。
+     */
+    static void rebuild(Connection con) throws SQLException {
+        rebuildCitations(con);
+        rebuildKeywords(con);
+    }
+
+    static void rebuildCitations(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("drop table if exists article_citation_count;");
+            stmt.execute(CREATE_CITATION_TABLE);
+            stmt.execute("INSERT INTO article_citation_count (article_id, citation_year, citation_count) "
+                    + CITATIONS_OF.formatted(""));
+            stmt.execute(CITATION_PRIMARY_KEY);
+            createCitationTriggers(stmt);
+        }
+    }
+
+    static void rebuildKeywords(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("drop table if exists keyword_year_count;");
+            stmt.execute(CREATE_KEYWORD_TABLE);
+            stmt.execute("INSERT INTO keyword_year_count (keyword_id, year, article_count) "
+                    + KEYWORDS_OF.formatted(""));
+            stmt.execute(KEYWORD_PRIMARY_KEY);
+            stmt.execute(CREATE_KEYWORD_TRIGGERS);
+        }
+    }
+
+    /**
+     * 用于旧版本或课程提供的 GoodLoader 导入的数据库：先补上 article_references.citing_year
+     * （{@link LoaderSchema#ensureCitingYear}），再重新统计不存在或没有触发器维护的统计表。
+     */
+    static void ensureTables(Connection con) throws SQLException {
+        LoaderSchema.ensureCitingYear(con);
+        if (!citationsMaintained(con)) {
+            rebuildCitations(con);
+        }
+        if (!keywordsMaintained(con)) {
+            rebuildKeywords(con);
+        }
+    }
+
+    /**
+     * @return Article_Citation_Count 存在且装有触发器。没有触发器的表可能是旧版本导入后留下的，
+     * 也可能是课程提供的 CitationCountManager 在关闭前没来得及删除的，之后的修改不一定计入，需要重新统计；
+     * 缺少 article_citation_count_apply 的是触发器不会为增量导入跳过的旧版本，同样重新统计并换装触发器
+     */
+    static boolean citationsMaintained(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT to_regclass('" + CITATION_TABLE + "') IS NOT NULL"
+                     + " AND (SELECT COUNT(*) FROM pg_trigger"
+                     + " WHERE tgrelid = to_regclass('article_references') AND (tgname LIKE 'article_citation_count_%'"
+                     + " OR tgname = 'article_references_citing_year')"
+                     + " OR tgrelid = to_regclass('article') AND tgname = 'article_citing_year') = 6"
+                     + " AND to_regprocedure('article_citation_count_apply(int[], int[], int[])') IS NOT NULL")) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * @return Keyword_Year_Count 存在且装有触发器。没有触发器的表是旧版本导入的，之后的修改可能没有计入，需要重新统计
+     */
+    static boolean keywordsMaintained(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT to_regclass('" + KEYWORD_TABLE + "') IS NOT NULL"
+                     + " AND (SELECT COUNT(*) FROM pg_trigger WHERE tgname LIKE 'keyword_year_count_%'"
+                     + " AND tgrelid IN (to_regclass('article_keywords'), to_regclass('article'))) = 8")) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * 在 article_references 上安装维护 Article_Citation_Count 的触发器，在 Article_Citation_Count 建好主键后调用。
+     * 计数按 citing_year 归年，因此一并安装维护该列的 {@link LoaderSchema#CITING_YEAR_TRIGGERS}。
+     * 同时递增数据版本，并在提交时通知各应用实例重新载入索引。
+     */
+    static void createCitationTriggers(Statement stmt) throws SQLException {
+        stmt.execute(LoaderSchema.CITING_YEAR_TRIGGERS);
+        stmt.execute(CREATE_CITATION_TRIGGERS);
+        stmt.execute("SELECT article_citation_count_notify('reload')");
+    }
+
+    /**
+     * Article_Citation_Count 内容的版本：数据库名、表的 relfilenode 和 {@link #CITATION_VERSION_SEQUENCE} 的当前值。
+     * 重建表、TRUNCATE 会换新的 relfilenode，触发器和导入程序原地修改表时递增序列，两者之一改变即说明内容可能已变。
+     * {@link CitationCountManager} 以此判断磁盘上的索引快照是否仍然有效。
+     */
+    static String citationVersion(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT current_database(), pg_relation_filenode('" + CITATION_TABLE
+                     + "'), (SELECT last_value FROM pg_sequences WHERE schemaname = current_schema()"
+                     + " AND sequencename = '" + CITATION_VERSION_SEQUENCE + "')")) {
+            rs.next();
+            return rs.getString(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3);
+        }
+    }
+
+    /**
+     * 递增 {@link #citationVersion}。nextval 不随事务回滚，导入失败时版本也已改变，只会多重建一次索引。
+     */
+    static void bumpCitationVersion(Statement stmt) throws SQLException {
+        stmt.execute("CREATE SEQUENCE IF NOT EXISTS " + CITATION_VERSION_SEQUENCE);
+        stmt.execute("SELECT nextval('" + CITATION_VERSION_SEQUENCE + "')");
+    }
+
+    static boolean exists(Connection con, String table) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("select to_regclass('" + table + "') is not null")) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package io.pubmed.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GoodLoader 的导入断点，保存在 loader_checkpoint、loader_checkpoint_file 和 loader_checkpoint_dictionary 三张表中。
+ * <p>
+ * 每次提交一批数据时，在同一个事务中记录已提交的记录数、四个 id 计数器、这一批新加入去重字典的条目，
+ * 以及每个输入文件已提交到的偏移和是否已读完。因此断点与表中数据始终一致；导入中断后用 --resume 重新运行，
+ * 会恢复字典和计数器，跳过已读完的文件，并从当前文件的断点偏移继续读取。
+ */
+final class LoaderCheckpoint {
+
+    private static final String CREATE_TABLES = """
+            CREATE TABLE loader_checkpoint (
+                id                INT PRIMARY KEY CHECK (id = 1),   -- 只有一行
+                input             TEXT    NOT NULL,                 -- 导入的文件、目录或通配符
+                records           BIGINT  NOT NULL,
+                author_id         INT     NOT NULL,
+                keyword_id        INT     NOT NULL,
+                article_ids_id    INT     NOT NULL,
+                grant_id          INT     NOT NULL,
+                defer_constraints BOOLEAN NOT NULL,
+                finished          BOOLEAN NOT NULL DEFAULT FALSE,
+                updated_at        TIMESTAMP NOT NULL DEFAULT now()
+            );
+            CREATE TABLE loader_checkpoint_file (
+                file_index  INT PRIMARY KEY,                         -- 按文件名排序后的序号
+                file_name   TEXT    NOT NULL,
+                file_size   BIGINT  NOT NULL,
+                file_offset BIGINT  NOT NULL DEFAULT 0,              -- 已提交记录之后的文件偏移
+                records     BIGINT  NOT NULL DEFAULT 0,              -- 该文件已提交的记录数
+                finished    BOOLEAN NOT NULL DEFAULT FALSE
+            );
+            CREATE TABLE loader_checkpoint_dictionary (
+                seq     SERIAL PRIMARY KEY,
+                entries BYTEA NOT NULL                               -- RecordResolver 字典日志的一段增量
+            );
+            """;
+
+    final String input;
+    final List<InputFile> files;
+    long records;
+    final boolean deferConstraints;
+    boolean finished;
+    /** 尚未写入数据库的文件行从这里开始，首次保存前为 0 */
+    private int dirtyFrom;
+    /** 文件行是否已经插入 */
+    private boolean stored;
+
+    LoaderCheckpoint(String input, List<InputFile> files, boolean deferConstraints) {
+        this.input = input;
+        this.files = files;
+        this.deferConstraints = deferConstraints;
+    }
+
+    /**
+     * 一个输入文件的导入进度。
+     */
+    static final class InputFile {
+        final String name;
+        final long size;
+        long offset;
+        long records;
+        boolean finished;
+
+        InputFile(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        static List<InputFile> of(List<Path> paths) throws IOException {
+            List<InputFile> files = new ArrayList<>();
+            for (Path path : paths) {
+                files.add(new InputFile(path.toString(), Files.size(path)));
+            }
+            return files;
+        }
+    }
+
+    /**
+     * @return 断点是否属于这组文件：文件名、顺序和大小都相同
+     */
+    boolean matches(List<InputFile> current) {
+        if (current.size() != files.size()) {
+            return false;
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!files.get(i).name.equals(current.get(i).name) || files.get(i).size != current.get(i).size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 每个文件继续读取的偏移，已读完的文件为 -1，见 {@link MultiFileSource}
+     */
+    long[] startOffsets() {
+        long[] offsets = new long[files.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = files.get(i).finished ? -1 : files.get(i).offset;
+        }
+        return offsets;
+    }
+
+    /**
+     * 记录第 file 个文件读到的位置，随下一次 {@link #save} 写入。
+     *
+     * @param offset   最后一条已处理记录之后的文件偏移
+     * @param finished 该文件是否已经读完
+     */
+    void fileProgress(int file, long offset, long records, boolean finished) {
+        InputFile f = files.get(file);
+        f.offset = offset;
+        f.records = records;
+        f.finished = finished;
+        dirtyFrom = Math.min(dirtyFrom, file);
+    }
+
+    /**
+     * 删除旧断点并建立空的断点表，与导入表的重建在同一事务中执行。
+     */
+    static void reset(Statement stmt) throws SQLException {
+        stmt.execute("drop table if exists loader_checkpoint_dictionary;");
+        stmt.execute("drop table if exists loader_checkpoint_file;");
+        stmt.execute("drop table if exists loader_checkpoint;");
+        stmt.execute(CREATE_TABLES);
+    }
+
+    /**
+     * 读取断点并把字典和 id 计数器恢复到 resolver 中。
+     *
+     * @return 断点，数据库中没有断点时返回 null
+     */
+    static LoaderCheckpoint load(Connection con, RecordResolver resolver) throws SQLException, IOException {
+        LoaderCheckpoint checkpoint;
+        try (Statement stmt = con.createStatement()) {
+            ResultSet exists = stmt.executeQuery("select to_regclass('loader_checkpoint') is not null");
+            exists.next();
+            if (!exists.getBoolean(1)) {
+                return null;
+            }
+            ResultSet rs = stmt.executeQuery("select input, records, author_id, keyword_id,"
+                    + " article_ids_id, grant_id, defer_constraints, finished from loader_checkpoint where id = 1");
+            if (!rs.next()) {
+                return null;
+            }
+            checkpoint = new LoaderCheckpoint(rs.getString(1), new ArrayList<>(), rs.getBoolean(7));
+            checkpoint.records = rs.getLong(2);
+            checkpoint.finished = rs.getBoolean(8);
+            resolver.authorid = rs.getInt(3);
+            resolver.keyid = rs.getInt(4);
+            resolver.article_idsid = rs.getInt(5);
+            resolver.grant_zizeng_id = rs.getInt(6);
+
+            rs = stmt.executeQuery("select file_name, file_size, file_offset, records, finished"
+                    + " from loader_checkpoint_file order by file_index");
+            while (rs.next()) {
+                InputFile f = new InputFile(rs.getString(1), rs.getLong(2));
+                f.offset = rs.getLong(3);
+                f.records = rs.getLong(4);
+                f.finished = rs.getBoolean(5);
+                checkpoint.files.add(f);
+            }
+            checkpoint.stored = true;
+            checkpoint.dirtyFrom = checkpoint.files.size();
+
+            stmt.setFetchSize(64);
+            rs = stmt.executeQuery("select entries from loader_checkpoint_dictionary order by seq");
+            while (rs.next()) {
+                resolver.replay(rs.getBytes(1));
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * 在当前事务中记录断点，调用方随后与这一批数据一起提交。文件的进度先由 {@link #fileProgress} 记录。
+     */
+    void save(Connection con, long records, RecordResolver resolver) throws SQLException {
+        this.records = records;
+        try (PreparedStatement ps = con.prepareStatement("""
+                insert into loader_checkpoint (id, input, records, author_id, keyword_id,
+                                               article_ids_id, grant_id, defer_constraints, finished, updated_at)
+                values (1, ?, ?, ?, ?, ?, ?, ?, ?, now())
+                on conflict (id) do update set records = excluded.records,
+                    author_id = excluded.author_id, keyword_id = excluded.keyword_id,
+                    article_ids_id = excluded.article_ids_id, grant_id = excluded.grant_id,
+                    finished = excluded.finished, updated_at = excluded.updated_at
+                """)) {
+            ps.setString(1, input);
+            ps.setLong(2, records);
+            ps.setInt(3, resolver.authorid);
+            ps.setInt(4, resolver.keyid);
+            ps.setInt(5, resolver.article_idsid);
+            ps.setInt(6, resolver.grant_zizeng_id);
+            ps.setBoolean(7, deferConstraints);
+            ps.setBoolean(8, finished);
+            ps.executeUpdate();
+        }
+        saveFiles(con);
+        byte[] entries = resolver.drainJournal();
+        if (entries.length > 0) {
+            try (PreparedStatement ps = con.prepareStatement(
+                    "insert into loader_checkpoint_dictionary (entries) values (?)")) {
+                ps.setBytes(1, entries);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * 首次保存时插入所有文件的行，之后只更新上次保存以来有进度的文件。
+     */
+    private void saveFiles(Connection con) throws SQLException {
+        if (!stored) {
+            try (PreparedStatement ps = con.prepareStatement("insert into loader_checkpoint_file"
+                    + " (file_index, file_name, file_size) values (?, ?, ?)")) {
+                for (int i = 0; i < files.size(); i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, files.get(i).name);
+                    ps.setLong(3, files.get(i).size);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            stored = true;
+        }
+        if (dirtyFrom >= files.size()) {
+            return;
+        }
+        try (PreparedStatement ps = con.prepareStatement("update loader_checkpoint_file"
+                + " set file_offset = ?, records = ?, finished = ? where file_index = ?")) {
+            for (int i = dirtyFrom; i < files.size(); i++) {
+                InputFile f = files.get(i);
+                if (f.offset == 0 && !f.finished) {
+                    // 之后的文件还没有开始读
+                    break;
+                }
+                ps.setLong(1, f.offset);
+                ps.setLong(2, f.records);
+                ps.setBoolean(3, f.finished);
+                ps.setInt(4, i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        dirtyFrom = files.size();
+    }
+
+    /**
+     * 导入（以及导入后的建约束）全部完成后调用，之后 --resume 不再有需要继续的工作。
+     */
+    void markFinished(Connection con) throws SQLException {
+        finished = true;
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("update loader_checkpoint set finished = true, updated_at = now() where id = 1");
+            stmt.executeUpdate("update loader_checkpoint_file set finished = true");
+            // 字典增量只在续传时使用
+            stmt.executeUpdate("truncate loader_checkpoint_dictionary");
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package io.pubmed.service.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.postgresql.copy.CopyManager;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 导入各阶段的计量：解析和去重每条记录的耗时、每张表写入的行数和字节数、刷新与提交的延迟分布、
+ * 阶段之间队列的深度以及去重字典占用的堆内存。
+ * <p>
+ * 各线程直接累加，{@link #start} 之后按固定间隔输出一行汇总，{@link #close} 时输出最终的汇总。
+ * 同时记录 JFR 事件（{@code io.pubmed.loader.*}，未开启录制时几乎没有开销），
+ * 可以用 {@code jfr print --events io.pubmed.loader.*} 查看。
+ */
+final class LoaderMetrics implements AutoCloseable {
+
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder parsedRecords = new LongAdder();
+    private final LongAdder parsedBytes = new LongAdder();
+    private final LongAdder resolveNanos = new LongAdder();
+    private final LongAdder resolvedRecords = new LongAdder();
+
+    private final Map<String, TableStats> tables = new ConcurrentSkipListMap<>();
+    private final Histogram batchFlush = new Histogram();
+    private final Histogram commit = new Histogram();
+
+    /** 队列深度等瞬时值，名称 -> 读取方法 */
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private final Consumer<String> out;
+    private ScheduledExecutorService reporter;
+    private boolean closed;
+
+    /**
+     * @param out 汇总行的去处，例如控制台或服务日志
+     */
+    LoaderMetrics(Consumer<String> out) {
+        this.out = out;
+    }
+
+    /**
+     * 解析线程解析完一个分段。
+     */
+    void parsed(int records, long bytes, long nanos) {
+        parsedRecords.add(records);
+        parsedBytes.add(bytes);
+        parseNanos.add(nanos);
+    }
+
+    /**
+     * 写入线程去重并写入缓冲区一个记录块。
+     */
+    void resolved(int records, long nanos) {
+        resolvedRecords.add(records);
+        resolveNanos.add(nanos);
+    }
+
+    /**
+     * 一张表的一次写入完成。bytes 为发送的数据量，JDBC batch 无法得知时为 0。
+     */
+    void tableFlushed(String table, int rows, long bytes, long nanos) {
+        TableStats stats = tables.computeIfAbsent(table, TableStats::new);
+        stats.rows.add(rows);
+        stats.bytes.add(bytes);
+        stats.latency.record(nanos);
+        TableFlushEvent event = new TableFlushEvent();
+        if (event.shouldCommit()) {
+            event.table = table;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.flushMillis = nanos / 1e6;
+            event.commit();
+        }
+    }
+
+    /**
+     * 以 COPY 写出缓冲区并计入该表的统计。
+     *
+     * @return 所用的时间（纳秒），缓冲区为空时为 0
+     */
+    long copyIn(String table, PgBinaryCopyBuffer buffer, CopyManager copyManager, String copySql)
+            throws SQLException {
+        int rows = buffer.rows();
+        if (rows == 0) {
+            return 0;
+        }
+        long bytes = buffer.size();
+        long t0 = System.nanoTime();
+        buffer.copyIn(copyManager, copySql);
+        long nanos = System.nanoTime() - t0;
+        tableFlushed(table, rows, bytes, nanos);
+        return nanos;
+    }
+
+    void batchFlushed(long records, long nanos) {
+        batchFlush.record(nanos);
+        BatchFlushEvent event = new BatchFlushEvent();
+        if (event.shouldCommit()) {
+            event.records = records;
+            event.flushMillis = nanos / 1e6;
+            event.commit();
+        }
+    }
+
+    void committed(long nanos) {
+        commit.record(nanos);
+        CommitEvent event = new CommitEvent();
+        if (event.shouldCommit()) {
+            event.commitMillis = nanos / 1e6;
+            event.commit();
+        }
+    }
+
+    void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * 每隔 intervalSeconds 秒把 {@link #report()} 交给 out，并记录一个快照事件。
+     */
+    void start(long intervalSeconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loader-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(this::tick, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void tick() {
+        try {
+            out.accept(report());
+            SnapshotEvent event = new SnapshotEvent();
+            if (event.shouldCommit()) {
+                event.records = resolvedRecords.sum();
+                event.parseNanosPerRecord = perRecord(parseNanos, parsedRecords);
+                event.resolveNanosPerRecord = perRecord(resolveNanos, resolvedRecords);
+                event.queuedChunks = gaugeValue("chunks");
+                event.queuedBlocks = gaugeValue("blocks");
+                event.busyWriters = gaugeValue("writers");
+                event.dictionaryBytes = gaugeValue("dictionaryBytes");
+                event.commit();
+            }
+        } catch (RuntimeException e) {
+            // 计量不能影响导入
+            out.accept("loader metrics failed: " + e);
+        }
+    }
+
+    private long gaugeValue(String name) {
+        LongSupplier gauge = gauges.get(name);
+        return gauge == null ? 0 : gauge.getAsLong();
+    }
+
+    private static double perRecord(LongAdder nanos, LongAdder records) {
+        long n = records.sum();
+        return n == 0 ? 0 : (double) nanos.sum() / n;
+    }
+
+    /**
+     * 一行汇总：累计值，以及延迟分布的 p50/p99/最大值（毫秒，按 2 的幂分桶的上界）。
+     */
+    String report() {
+        StringBuilder sb = new StringBuilder("loader metrics:");
+        sb.append(" records=").append(resolvedRecords.sum());
+        sb.append(String.format(" parse=%.0fns/rec (%.1fMB)", perRecord(parseNanos, parsedRecords),
+                parsedBytes.sum() / 1048576.0));
+        sb.append(String.format(" resolve=%.0fns/rec", perRecord(resolveNanos, resolvedRecords)));
+        for (Map.Entry<String, LongSupplier> gauge : new ConcurrentSkipListMap<>(gauges).entrySet()) {
+            sb.append(' ').append(gauge.getKey()).append('=').append(gauge.getValue().getAsLong());
+        }
+        sb.append(" batchFlush=").append(batchFlush);
+        sb.append(" commit=").append(commit);
+        for (TableStats stats : tables.values()) {
+            sb.append(String.format(" | %s rows=%d %.1fMB flush=%s", stats.table, stats.rows.sum(),
+                    stats.bytes.sum() / 1048576.0, stats.latency));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 停止定期输出，并输出最后一次汇总。
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        tick();
+    }
+
+    private static final class TableStats {
+        final String table;
+        final LongAdder rows = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final Histogram latency = new Histogram();
+
+        TableStats(String table) {
+            this.table = table;
+        }
+    }
+
+    /**
+     * 延迟分布，第 i 个桶统计 [2^(i-1), 2^i) 微秒的次数。
+     */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(40);
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(micros));
+        }
+
+        /**
+         * @return 第 p 百分位所在桶的上界（毫秒），没有数据时为 0
+         */
+        double percentile(double p) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return (1L << i) / 1000.0;
+                }
+            }
+            return (1L << (buckets.length() - 1)) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f/%.1f/%.1fms", percentile(0.5), percentile(0.99), percentile(1.0));
+        }
+    }
+
+    @Name("io.pubmed.loader.TableFlush")
+    @Label("Loader Table Flush")
+    @Category({"PubMed", "Loader"})
+    @StackTrace(false)
+    static final class TableFlushEvent extends Event {
+        @Label("Table")
+        String table;
+        @Label("Rows")
+        int rows;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Flush Time (ms)")
+        double flushMillis;
+    }
+
+    @Name("io.pubmed.loader.BatchFlush")
+    @Label("Loader Batch Flush")
+    @Category({"PubMed", "Loader"})
+    @StackTrace(false)
+    static final class BatchFlushEvent extends Event {
+        @Label("Records")
+        long records;
+        @Label("Flush Time (ms)")
+        double flushMillis;
+    }
+
+    @Name("io.pubmed.loader.Commit")
+    @Label("Loader Commit")
+    @Category({"PubMed", "Loader"})
+    @StackTrace(false)
+    static final class CommitEvent extends Event {
+        @Label("Commit Time (ms)")
+        double commitMillis;
+    }
+
+    @Name("io.pubmed.loader.Snapshot")
+    @Label("Loader Snapshot")
+    @Category({"PubMed", "Loader"})
+    @StackTrace(false)
+    static final class SnapshotEvent extends Event {
+        @Label("Records")
+        long records;
+        @Label("Parse ns/record")
+        double parseNanosPerRecord;
+        @Label("Resolve ns/record")
+        double resolveNanosPerRecord;
+        @Label("Queued Chunks")
+        long queuedChunks;
+        @Label("Queued Blocks")
+        long queuedBlocks;
+        @Label("Busy Writers")
+        long busyWriters;
+        @Label("Dictionary Heap")
+        @DataAmount
+        long dictionaryBytes;
+    }
+}
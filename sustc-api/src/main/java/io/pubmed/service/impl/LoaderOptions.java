@@ -0,0 +1,129 @@
+package io.pubmed.service.impl;
+
+import java.time.LocalDate;
+
+/**
+ * GoodLoader 的命令行参数。
+ * <p>
+ * 用法：GoodLoader [--copy] [--threads=N] [--defer-constraints] [--index-threads=N] [--resume] [--incremental]
+ * [--decompress-threads=N] [--staging] [--parallel-writers] [--metrics-interval=N] [--flush-memory=MB]
+ * [--fixed-batches] [--partition-by-year[=FROM-TO]] [--file-workers=N] ndjson 文件、目录或通配符
+ * <p>
+ * 输入文件可以是 NDJSON，也可以是 gzip 或 zstd 压缩的 NDJSON，按文件头识别。
+ * 输入为目录或通配符（例如 baseline/pubmed24n*.json.gz）时按文件名顺序导入所有文件，见 {@link MultiFileSource}。
+ */
+final class LoaderOptions {
+
+    /** 输入的 ndjson 文件、目录或通配符，必须指定 */
+    String fileName;
+    /** 为 true 时使用 COPY (FORMAT binary) 写入，否则使用 JDBC batch */
+    boolean useCopy = false;
+    /** 解析线程数，默认留出读取线程和写入线程各一个核 */
+    int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+    /** 为 true 时先建无约束的表，导入完成后再并行创建主键、索引、外键和触发器 */
+    boolean deferConstraints = false;
+    /** 导入后并行建约束使用的连接数 */
+    int indexThreads = Math.min(8, Runtime.getRuntime().availableProcessors());
+    /** 为 true 时不重建表，从数据库中保存的断点继续导入，见 {@link LoaderCheckpoint} */
+    boolean resume = false;
+    /** 为 true 时在已有数据上增量导入：不重建表，文章按 id upsert，见 {@link IncrementalSink} */
+    boolean incremental = false;
+    /** 输入为分块 gzip（BGZF）时并行解压的线程数；普通 gzip 和 zstd 每个文件一个解压线程 */
+    int decompressThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    /**
+     * 为 true 时先把原始行写入 UNLOGGED 暂存表，再用 SQL 去重合并到正式表，见 {@link StagingSchema}。
+     * 合并后再建约束，相当于同时指定了 --defer-constraints；不保存断点
+     */
+    boolean staging = false;
+    /**
+     * 为 true 时每张表由各自的线程和连接 COPY，见 {@link CopyLanes}。各连接分别提交，
+     * 因此隐含 --copy 和 --defer-constraints，并且不保存断点
+     */
+    boolean parallelWriters = false;
+    /** 每隔多少秒输出一行 {@link LoaderMetrics} 汇总，0 表示只在导入结束时输出 */
+    int metricsInterval = 10;
+    /** 各表写入缓冲区合计的内存预算（MB），见 {@link AdaptiveFlush} */
+    int flushMemory = 64;
+    /** 为 true 时不自适应：每 30000 条记录一起写出所有表并提交 */
+    boolean fixedBatches = false;
+    /** 不为 null 时 Article 和 article_references 按年分区，见 {@link LoaderSchema.YearPartitions} */
+    LoaderSchema.YearPartitions partitions = null;
+    /** 多文件导入时同时打开、提前读取和解压的文件数 */
+    int fileWorkers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * @return --parallel-writers 时写入线程各自占用的连接数，否则为 0；此外导入始终占用一个主连接
+     */
+    int writerConnections() {
+        if (!parallelWriters) {
+            return 0;
+        }
+        return staging ? StagingWriter.laneNames().length : BinaryCopySink.laneNames().length;
+    }
+
+    static LoaderOptions parse(String[] args) {
+        LoaderOptions options = new LoaderOptions();
+        for (String arg : args) {
+            if ("--copy".equals(arg)) {
+                options.useCopy = true;
+            } else if (arg.startsWith("--threads=")) {
+                options.parserThreads = Math.max(1, Integer.parseInt(arg.substring("--threads=".length())));
+            } else if ("--defer-constraints".equals(arg)) {
+                options.deferConstraints = true;
+            } else if (arg.startsWith("--index-threads=")) {
+                options.indexThreads = Math.max(1, Integer.parseInt(arg.substring("--index-threads=".length())));
+            } else if ("--resume".equals(arg)) {
+                options.resume = true;
+            } else if ("--incremental".equals(arg)) {
+                options.incremental = true;
+            } else if (arg.startsWith("--decompress-threads=")) {
+                options.decompressThreads = Math.max(1,
+                        Integer.parseInt(arg.substring("--decompress-threads=".length())));
+            } else if ("--staging".equals(arg)) {
+                options.staging = true;
+            } else if ("--parallel-writers".equals(arg)) {
+                options.parallelWriters = true;
+            } else if (arg.startsWith("--metrics-interval=")) {
+                options.metricsInterval = Math.max(0, Integer.parseInt(arg.substring("--metrics-interval=".length())));
+            } else if (arg.startsWith("--flush-memory=")) {
+                options.flushMemory = Math.max(1, Integer.parseInt(arg.substring("--flush-memory=".length())));
+            } else if ("--fixed-batches".equals(arg)) {
+                options.fixedBatches = true;
+            } else if ("--partition-by-year".equals(arg)) {
+                options.partitions = new LoaderSchema.YearPartitions(1950, LocalDate.now().getYear() + 1);
+            } else if (arg.startsWith("--partition-by-year=")) {
+                options.partitions = LoaderSchema.YearPartitions.parse(arg.substring("--partition-by-year=".length()));
+            } else if (arg.startsWith("--file-workers=")) {
+                options.fileWorkers = Math.max(1, Integer.parseInt(arg.substring("--file-workers=".length())));
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                options.fileName = arg;
+            }
+        }
+        if (options.fileName == null) {
+            throw new IllegalArgumentException("Input file is required");
+        }
+        if (options.incremental && (options.useCopy || options.deferConstraints || options.resume)) {
+            throw new IllegalArgumentException(
+                    "--incremental cannot be combined with --copy, --defer-constraints or --resume");
+        }
+        if (options.staging && (options.incremental || options.resume)) {
+            throw new IllegalArgumentException("--staging cannot be combined with --incremental or --resume");
+        }
+        if (options.parallelWriters && (options.incremental || options.resume)) {
+            throw new IllegalArgumentException("--parallel-writers cannot be combined with --incremental or --resume");
+        }
+        if (options.partitions != null && (options.incremental || options.resume)) {
+            throw new IllegalArgumentException(
+                    "--partition-by-year only applies when tables are recreated, not with --incremental or --resume");
+        }
+        if (options.staging || options.parallelWriters) {
+            options.deferConstraints = true;
+        }
+        if (options.parallelWriters) {
+            options.useCopy = true;
+        }
+        return options;
+    }
+}
@@ -0,0 +1,591 @@
+package io.pubmed.service.impl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * GoodLoader 使用的表结构。
+ * <p>
+ * 建表语句只包含列、默认值和 CHECK 约束；主键、唯一索引、外键和触发器单独列出，
+ * 既可以在导入前一次性创建（{@link #createConstraints}），也可以在批量导入之后用多个连接并行构建
+ * （{@link #buildConstraints}），后一种方式下导入期间不需要维护任何索引。
+ * <p>
+ * Article 和 article_references 可以按年分区，见 {@link YearPartitions}。
+ */
+final class LoaderSchema {
+
+    static final String[] DROP_TABLES = {
+            "drop table if exists article_authors cascade;",
+            "drop table if exists article_journal cascade;",
+            "drop table if exists article_references cascade;",
+            "drop table if exists article_keywords cascade;",
+            "drop table if exists article_publication_types cascade;",
+            "drop table if exists article_grants cascade;",
+            "drop table if exists article_ids cascade;",
+            "drop table if exists article cascade;",
+            "drop table if exists authors cascade;",
+            "drop table if exists journal cascade;",
+            "drop table if exists keywords cascade;",
+            "drop table if exists publication_types cascade;",
+            "drop table if exists grant_info cascade;",
+    };
+
+    static final String CREATE_ARTICLE = """
+            CREATE TABLE Article (
+                id             INT NOT NULL CHECK (id BETWEEN 1 AND 99999999),            -- 唯一标识符，1到8位整数
+                title          VARCHAR(1000) NOT NULL,                                    -- 文章标题
+                pub_model      VARCHAR(50)   NOT NULL CHECK (pub_model IN
+                                                             ('Print', 'Print-Electronic', 'Electronic', 'Electronic-Print',
+                                                              'Electronic-eCollection')), -- 出版模式，五种可能的值
+                date_created   DATE          NOT NULL,                                    -- 创建日期
+                date_completed DATE                                                       -- 完成日期，允许为空
+            )""";
+
+    static final String CREATE_REFERENCES = """
+            CREATE TABLE article_references (
+                article_id   INT NOT NULL,
+                reference_id INT NOT NULL,
+                citing_year  INT NOT NULL                                    -- 引用文章的创建年份，按年统计和分区用，见 CITING_YEAR_TRIGGERS
+            )""";
+
+    static final String CREATE_TABLES = """
+            CREATE TABLE Journal (
+                id      VARCHAR(20) NOT NULL,                                -- 期刊的唯一ID
+                country VARCHAR(200) NOT NULL,                               -- 期刊所属国家
+                issn    VARCHAR(9) CHECK (LENGTH(issn) = 9 or issn=''),      -- ISSN编号，8位字符
+                title   VARCHAR(1000) NOT NULL,                              -- 期刊标题
+                volume  VARCHAR(50),                                         -- 期刊卷号，允许为空
+                issue   VARCHAR(50)
+            );
+            CREATE TABLE Article_Journal (
+                journal_id varchar(20) NOT NULL,
+                article_id int NOT NULL
+            );
+            CREATE TABLE Authors (
+                author_id          INT NOT NULL,
+                fore_name          VARCHAR(255) DEFAULT '',                  -- 个人作者的名字，空值存储为 ''
+                last_name          VARCHAR(255) DEFAULT '',                  -- 个人作者的姓氏，空值存储为 ''
+                initials           VARCHAR(10) DEFAULT '',                   -- 个人作者的姓名缩写，空值存储为 ''
+                is_collective_name BOOLEAN DEFAULT FALSE,                    -- 是否为团队名称
+                affiliation        text default '':: text not null
+            );
+            CREATE TABLE Article_Authors (
+                article_id INT NOT NULL,
+                author_id  INT NOT NULL
+            );
+            CREATE TABLE Publication_Types (
+                id   VARCHAR(20) NOT NULL,                                   -- 出版类型的唯一ID
+                name VARCHAR(200) NOT NULL                                   -- 出版类型名称
+            );
+            CREATE TABLE Article_Publication_Types (
+                article_id  INT NOT NULL,
+                pub_type_id VARCHAR(20) NOT NULL
+            );
+            CREATE TABLE Grant_info (
+                id       INT NOT NULL,
+                grant_id VARCHAR(50),                                        -- 资助的ID
+                acronym  VARCHAR(10),                                        -- 资助简称，允许为空
+                agency   VARCHAR(500) NOT NULL,                              -- 资助机构
+                country  VARCHAR(100)                                        -- 资助国家，允许为空
+            );
+            CREATE TABLE Article_Grants (
+                article_id INT NOT NULL,
+                grant_id   int NOT NULL
+            );
+            CREATE TABLE Article_Ids (
+                id         SERIAL,                                           -- 自动递增
+                article_id INT,
+                type       VARCHAR(50) NOT NULL,                             -- ID类型（例如 pubmed, doi等）
+                identifier VARCHAR(255) NOT NULL                             -- 具体的ID值
+            );
+            CREATE TABLE Keywords (
+                id      SERIAL,                                              -- 关键词的唯一ID
+                keyword VARCHAR(100) NOT NULL                                -- 关键词内容
+            );
+            CREATE TABLE Article_Keywords (
+                article_id INT NOT NULL,
+                keyword_id INT NOT NULL
+            );
+            """;
+
+    private static final String ARTICLE_PRIMARY_KEY = "ALTER TABLE article ADD PRIMARY KEY (id)";
+    private static final String REFERENCES_PRIMARY_KEY =
+            "ALTER TABLE article_references ADD PRIMARY KEY (article_id, reference_id)";
+
+    /**
+     * 主键和唯一索引。每条语句只涉及一张表，彼此之间可以并行执行。
+     */
+    static final List<String> PRIMARY_KEYS_AND_INDEXES = List.of(
+            ARTICLE_PRIMARY_KEY,
+            "ALTER TABLE journal ADD PRIMARY KEY (id)",
+            "ALTER TABLE article_journal ADD PRIMARY KEY (journal_id, article_id)",
+            "ALTER TABLE authors ADD PRIMARY KEY (author_id)",
+            REFERENCES_PRIMARY_KEY,
+            "ALTER TABLE article_authors ADD PRIMARY KEY (article_id, author_id)",
+            "ALTER TABLE publication_types ADD PRIMARY KEY (id)",
+            "ALTER TABLE article_publication_types ADD PRIMARY KEY (article_id, pub_type_id)",
+            "ALTER TABLE grant_info ADD PRIMARY KEY (id)",
+            "ALTER TABLE article_grants ADD PRIMARY KEY (article_id, grant_id)",
+            "ALTER TABLE article_ids ADD PRIMARY KEY (id)",
+            "ALTER TABLE keywords ADD PRIMARY KEY (id)",
+            "ALTER TABLE article_keywords ADD PRIMARY KEY (article_id, keyword_id)",
+            // 关键词查询按内容查找 id
+            "CREATE INDEX keywords_keyword ON keywords (keyword)",
+            // 唯一性部分索引: collective_name 的唯一性（仅适用于 collective_name 非空记录）
+            "CREATE UNIQUE INDEX unique_collective_name ON Authors (last_name) WHERE is_collective_name=true",
+            // 唯一性部分索引: last_name 的唯一性（仅适用于只有 last_name 的个人作者记录）
+            "CREATE UNIQUE INDEX unique_last_name ON Authors (last_name)"
+                    + " WHERE fore_name = '' AND initials = ''AND is_collective_name=false",
+            // 唯一性部分索引: fore_name, last_name, initials 的唯一性（仅适用于完整个人作者记录）
+            "CREATE UNIQUE INDEX unique_full_name ON Authors (fore_name, last_name, initials)"
+                    + " WHERE fore_name <> '' or initials <> ''and is_collective_name=false"
+    );
+
+    /**
+     * 外键，名称与列内定义时 PostgreSQL 自动生成的名称一致。依赖被引用表的主键。
+     */
+    static final List<ForeignKey> FOREIGN_KEYS = List.of(
+            new ForeignKey("article_journal", "journal_id", "journal(id)", ""),
+            new ForeignKey("article_journal", "article_id", "article(id)", ""),
+            new ForeignKey("article_references", "article_id", "article(id)", " ON DELETE CASCADE"),
+            new ForeignKey("article_authors", "article_id", "article(id)", ""),
+            new ForeignKey("article_authors", "author_id", "authors(author_id)", ""),
+            new ForeignKey("article_publication_types", "article_id", "article(id)", ""),
+            new ForeignKey("article_publication_types", "pub_type_id", "publication_types(id)", ""),
+            new ForeignKey("article_grants", "article_id", "article(id)", ""),
+            new ForeignKey("article_grants", "grant_id", "grant_info(id)", ""),
+            new ForeignKey("article_ids", "article_id", "article(id)", ""),
+            new ForeignKey("article_keywords", "article_id", "article(id)", ""),
+            new ForeignKey("article_keywords", "keyword_id", "keywords(id)", "")
+    );
+
+    /**
+     * 分区表的主键必须包含分区键。引用行的年份由 article_id 决定，加入后唯一性不变；
+     * 文章 id 则只在各分区内唯一，跨年份的重复由 {@link #checkArticleIds} 在导入结束时检查。
+     */
+    private static final Map<String, String> PARTITIONED_PRIMARY_KEYS = Map.of(
+            ARTICLE_PRIMARY_KEY, "ALTER TABLE article ADD PRIMARY KEY (id, date_created)",
+            REFERENCES_PRIMARY_KEY, "ALTER TABLE article_references ADD PRIMARY KEY (article_id, reference_id, citing_year)"
+    );
+
+    static final String TRIGGERS_AND_VIEWS = """
+            -- 创建函数检查 date_completed 是否不早于 date_created
+            CREATE OR REPLACE FUNCTION check_date_completed()
+            RETURNS TRIGGER AS $$
+            BEGIN
+                IF NEW.date_completed IS NOT NULL THEN
+                    IF NEW.date_completed < NEW.date_created THEN
+                        RAISE EXCEPTION 'date_completed cannot be earlier than date_created';
+            END IF;
+            END IF;
+            RETURN NEW;
+            END;
+            $$ LANGUAGE plpgsql;
+
+            -- 在 Article 表上创建触发器
+            CREATE TRIGGER trg_check_date_completed
+                BEFORE INSERT OR UPDATE ON Article
+                                     FOR EACH ROW EXECUTE FUNCTION check_date_completed();
+
+            -- 创建函数检查 Authors 表的数据一致性
+            CREATE OR REPLACE FUNCTION check_authors_consistency()
+            RETURNS TRIGGER AS $$
+            BEGIN
+                IF NEW.is_collective_name THEN
+                    IF NEW.last_name IS NULL OR NEW.last_name = '' THEN
+                        RAISE EXCEPTION 'Collective name must be provided when is_collective is TRUE';
+            END IF;
+                    IF NEW.fore_name != ''  OR NEW.initials != '' THEN
+                        RAISE EXCEPTION 'Fore_name, last_name, and initials must be empty when is_collective is TRUE';
+            END IF;
+            ELSE
+
+                    IF NEW.last_name = '' THEN
+                        RAISE EXCEPTION 'Last name must be provided when is_collective is FALSE';
+            END IF;
+            END IF;
+            RETURN NEW;
+            END;
+            $$ LANGUAGE plpgsql;
+
+            -- 在 Authors 表上创建触发器
+            CREATE TRIGGER trg_check_authors_consistency
+                BEFORE INSERT OR UPDATE ON Authors
+                                     FOR EACH ROW EXECUTE FUNCTION check_authors_consistency();
+
+            -- 创建函数检查 ISSN 的格式
+            CREATE OR REPLACE FUNCTION check_issn_format()
+            RETURNS TRIGGER AS $$
+            BEGIN
+                IF NEW.issn = '' OR NEW.issn ~ '^[A-Za-z0-9]{4}-[A-Za-z0-9]{4}$' THEN
+                    RETURN NEW;
+            ELSE
+                    RAISE EXCEPTION 'Invalid ISSN format in Journal';
+            END IF;
+            RETURN NEW;
+            END;
+            $$ LANGUAGE plpgsql;
+            -- 在 Journal 表上创建触发器
+            CREATE TRIGGER trg_check_issn_format
+                BEFORE INSERT OR UPDATE ON Journal
+                                     FOR EACH ROW EXECUTE FUNCTION check_issn_format();
+
+            CREATE OR REPLACE VIEW Article_Citations AS
+            SELECT
+                ar.reference_id AS article_id, -- 被引用的文章 ID
+                COUNT(ar.article_id) AS citation_count, -- 被引用的次数
+                EXTRACT(YEAR FROM a.date_created) AS citation_year -- 引用发生的年份
+            FROM article_references ar
+            JOIN Article a ON ar.article_id = a.id -- 引用文章的创建日期
+            GROUP BY ar.reference_id, EXTRACT(YEAR FROM a.date_created)
+            """;
+
+    /**
+     * 增量导入在每个事务中把此参数设为 on：它按记录自己填好 citing_year，并且整体替换改动文章的引用行，
+     * {@link #CITING_YEAR_TRIGGERS} 不必再逐行查 Article；Article_Citation_Count 和 Keyword_Year_Count 也由它按批次维护，
+     * {@link LoaderAggregates#CREATE_CITATION_TRIGGERS} 和 {@link LoaderAggregates#CREATE_KEYWORD_TRIGGERS} 同样跳过。
+     */
+    static final String LOADER_SETTING = "pubmed.loader";
+
+    /**
+     * 让 article_references.citing_year 始终等于引用文章 date_created 的年份：
+     * <ul>
+     *     <li>插入引用行或修改其 article_id 时由 BEFORE 行触发器从 Article 填入，写入方可以省略该列；</li>
+     *     <li>修改 Article.date_created 跨年时由语句级触发器改写这些文章的引用行，
+     *     引用行上的计数触发器随之把引用次数移到新年份。</li>
+     * </ul>
+     * 按年分区时 citing_year 是分区键，行在 BEFORE 触发器之前已按给出的值选定分区，
+     * 写入方必须给出正确的年份，不一致时触发器报错而不是改写。
+     * 导入期间不安装，批量写入完成后与引用计数的触发器一起安装，见 {@link LoaderAggregates#createCitationTriggers}。
+     */
+    static final String CITING_YEAR_TRIGGERS = """
+            CREATE OR REPLACE FUNCTION article_references_citing_year() RETURNS trigger LANGUAGE plpgsql AS $$
+            DECLARE
+                year int;
+            BEGIN
+                IF current_setting('pubmed.loader', true) = 'on' THEN
+                    RETURN NEW;
+                END IF;
+                SELECT EXTRACT(YEAR FROM date_created)::int INTO year FROM article WHERE id = NEW.article_id LIMIT 1;
+                IF year IS NULL THEN
+                    RAISE EXCEPTION 'Article % referenced by article_references does not exist', NEW.article_id
+                        USING ERRCODE = 'foreign_key_violation';
+                END IF;
+                -- 触发器在分区上执行时，行已按 citing_year 落入分区，不能再改
+                IF TG_TABLE_NAME <> 'article_references' AND NEW.citing_year IS DISTINCT FROM year THEN
+                    RAISE EXCEPTION 'citing_year % of article % must be the year of its date_created (%)',
+                        NEW.citing_year, NEW.article_id, year USING ERRCODE = 'check_violation';
+                END IF;
+                NEW.citing_year := year;
+                RETURN NEW;
+            END
+            $$;
+            CREATE OR REPLACE FUNCTION article_citing_year_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+            BEGIN
+                IF current_setting('pubmed.loader', true) = 'on' THEN
+                    RETURN NULL;
+                END IF;
+                UPDATE article_references ar SET citing_year = EXTRACT(YEAR FROM n.date_created)::int
+                FROM new_rows n JOIN old_rows o ON o.id = n.id
+                WHERE ar.article_id = n.id
+                  AND EXTRACT(YEAR FROM n.date_created) <> EXTRACT(YEAR FROM o.date_created);
+                RETURN NULL;
+            END
+            $$;
+            DROP TRIGGER IF EXISTS article_references_citing_year ON article_references;
+            DROP TRIGGER IF EXISTS article_citing_year ON article;
+            CREATE TRIGGER article_references_citing_year BEFORE INSERT OR UPDATE OF article_id, citing_year
+                ON article_references FOR EACH ROW EXECUTE FUNCTION article_references_citing_year();
+            CREATE TRIGGER article_citing_year AFTER UPDATE ON article
+                REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+                FOR EACH STATEMENT EXECUTE FUNCTION article_citing_year_sync();
+            """;
+
+    private LoaderSchema() {
+    }
+
+    /**
+     * 课程提供的 GoodLoader 和本程序的旧版本建立的 article_references 没有 citing_year：加上该列，
+     * 按引用文章的 date_created 补齐后设为 NOT NULL。表不存在或已有该列时什么也不做，调用方负责提交。
+     */
+    static void ensureCitingYear(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT to_regclass('article_references') IS NULL"
+                    + " OR EXISTS (SELECT 1 FROM pg_attribute WHERE attrelid = to_regclass('article_references')"
+                    + " AND attname = 'citing_year' AND NOT attisdropped)")) {
+                rs.next();
+                if (rs.getBoolean(1)) {
+                    return;
+                }
+            }
+            // 几个应用实例同时启动时，后来者等前者提交后再执行，IF NOT EXISTS 和 IS NULL 使重复执行无害
+            stmt.execute("ALTER TABLE article_references ADD COLUMN IF NOT EXISTS citing_year INT");
+            stmt.execute("UPDATE article_references ar SET citing_year = EXTRACT(YEAR FROM a.date_created)::int"
+                    + " FROM article a WHERE a.id = ar.article_id AND ar.citing_year IS NULL");
+            stmt.execute("ALTER TABLE article_references ALTER COLUMN citing_year SET NOT NULL");
+        }
+    }
+
+    static void dropTables(Statement stmt) throws SQLException {
+        for (String sql : DROP_TABLES) {
+            stmt.execute(sql);
+        }
+    }
+
+    /**
+     * @param partitions 为 null 时建普通表，否则 Article 和 article_references 按年分区，见 {@link YearPartitions}
+     */
+    static void createTables(Statement stmt, YearPartitions partitions) throws SQLException {
+        if (partitions == null) {
+            stmt.execute(CREATE_ARTICLE);
+            stmt.execute(CREATE_REFERENCES);
+        } else {
+            stmt.execute(CREATE_ARTICLE + " PARTITION BY RANGE (date_created)");
+            stmt.execute(CREATE_REFERENCES + " PARTITION BY RANGE (citing_year)");
+            partitions.create(stmt);
+        }
+        stmt.execute(CREATE_TABLES);
+    }
+
+    /**
+     * @return con 所连数据库中 Article 表的分区方式，未分区时为 null
+     */
+    static YearPartitions partitions(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("""
+                     SELECT min(substring(c.relname FROM 10)::int), max(substring(c.relname FROM 10)::int)
+                     FROM pg_class p
+                     LEFT JOIN pg_inherits i ON i.inhparent = p.oid
+                     LEFT JOIN pg_class c ON c.oid = i.inhrelid AND c.relname ~ '^article_y[0-9]+$'
+                     WHERE p.oid = to_regclass('article') AND p.relkind = 'p'
+                     GROUP BY p.oid
+                     """)) {
+            if (!rs.next()) {
+                return null;
+            }
+            int from = rs.getInt(1);
+            // 只有 DEFAULT 分区时 min 为 null
+            return rs.wasNull() ? new YearPartitions(1, 0) : new YearPartitions(from, rs.getInt(2));
+        }
+    }
+
+    /**
+     * 分区后的 Article 主键包含 date_created，不同年份中的重复 id 不会被主键拒绝，导入结束时单独检查。
+     */
+    static void checkArticleIds(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM article GROUP BY id HAVING count(*) > 1 LIMIT 1")) {
+            if (rs.next()) {
+                throw new SQLException("duplicate key value violates unique constraint \"article_pkey\": Key (id)=("
+                        + rs.getInt(1) + ") already exists", "23505");
+            }
+        }
+    }
+
+    /**
+     * 分区表不能以 article(id) 为外键的目标，也不能用 (id) 作主键，按分区方式调整。
+     */
+    static List<String> primaryKeysAndIndexes(boolean partitioned) {
+        if (!partitioned) {
+            return PRIMARY_KEYS_AND_INDEXES;
+        }
+        List<String> keys = new ArrayList<>();
+        for (String sql : PRIMARY_KEYS_AND_INDEXES) {
+            keys.add(PARTITIONED_PRIMARY_KEYS.getOrDefault(sql, sql));
+        }
+        return keys;
+    }
+
+    static List<ForeignKey> foreignKeys(boolean partitioned) {
+        if (!partitioned) {
+            return FOREIGN_KEYS;
+        }
+        List<ForeignKey> keys = new ArrayList<>();
+        for (ForeignKey fk : FOREIGN_KEYS) {
+            if (!fk.references.equals("article(id)")) {
+                keys.add(fk);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 在空表上依次创建主键、索引、外键和触发器，用于逐行校验的普通导入。
+     */
+    static void createConstraints(Statement stmt) throws SQLException {
+        boolean partitioned = partitions(stmt.getConnection()) != null;
+        for (String sql : primaryKeysAndIndexes(partitioned)) {
+            stmt.execute(sql);
+        }
+        for (ForeignKey fk : foreignKeys(partitioned)) {
+            stmt.execute(fk.addSql(false));
+        }
+        stmt.execute(TRIGGERS_AND_VIEWS);
+    }
+
+    /**
+     * 批量导入完成后，用 parallelism 个连接并行构建约束：
+     * <ol>
+     *     <li>并行创建所有主键和唯一索引；</li>
+     *     <li>以 NOT VALID 方式快速添加外键，再并行 VALIDATE（VALIDATE 只对被引用表加 ROW SHARE 锁，互不阻塞）；</li>
+     *     <li>创建触发器和视图，并行 ANALYZE 所有表。</li>
+     * </ol>
+     * 每条语句在各自的连接上自动提交。
+     */
+    static void buildConstraints(ConnectionFactory connections, int parallelism) throws SQLException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "loader-ddl");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            boolean partitioned;
+            try (Connection con = connections.open()) {
+                partitioned = partitions(con) != null;
+            }
+            runParallel(pool, connections, primaryKeysAndIndexes(partitioned));
+
+            List<String> validate = new ArrayList<>();
+            try (Connection con = connections.open(); Statement stmt = con.createStatement()) {
+                con.setAutoCommit(true);
+                for (ForeignKey fk : foreignKeys(partitioned)) {
+                    stmt.execute(fk.addSql(true));
+                    validate.add(fk.validateSql());
+                }
+                stmt.execute(TRIGGERS_AND_VIEWS);
+            }
+            runParallel(pool, connections, validate);
+
+            List<String> analyze = new ArrayList<>();
+            for (LoaderTable table : LoaderTable.values()) {
+                analyze.add("ANALYZE " + table.tableName());
+            }
+            runParallel(pool, connections, analyze);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void runParallel(ExecutorService pool, ConnectionFactory connections, List<String> statements)
+            throws SQLException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (String sql : statements) {
+            futures.add(pool.submit(() -> {
+                try (Connection con = connections.open(); Statement stmt = con.createStatement()) {
+                    con.setAutoCommit(true);
+                    stmt.execute(sql);
+                }
+                return null;
+            }));
+        }
+        SQLException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                SQLException se = cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+                if (failure == null) {
+                    failure = se;
+                } else {
+                    failure.setNextException(se);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while building constraints", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Article 按 date_created、article_references 按 citing_year 划分的年度范围分区。
+     * <p>
+     * [from, to] 内每年一个分区，其余年份落入 DEFAULT 分区。按年份查询时只需扫描一两个分区，
+     * 旧年份的分区不再变化，可以单独 VACUUM 和 ANALYZE。代价是 PostgreSQL 不支持以分区表为外键目标，
+     * 引用 article(id) 的外键不再建立，文章 id 的唯一性也只在分区内由主键保证，见 {@link #checkArticleIds}。
+     */
+    static final class YearPartitions {
+        final int from;
+        final int to;
+
+        YearPartitions(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @param range 形如 FROM-TO 的年份范围
+         */
+        static YearPartitions parse(String range) {
+            int dash = range.indexOf('-');
+            if (dash <= 0) {
+                throw new IllegalArgumentException("Expected FROM-TO year range: " + range);
+            }
+            int from = Integer.parseInt(range.substring(0, dash));
+            int to = Integer.parseInt(range.substring(dash + 1));
+            if (from > to) {
+                throw new IllegalArgumentException("Empty year range: " + range);
+            }
+            return new YearPartitions(from, to);
+        }
+
+        void create(Statement stmt) throws SQLException {
+            StringBuilder sql = new StringBuilder();
+            for (int year = from; year <= to; year++) {
+                sql.append("CREATE TABLE article_y").append(year).append(" PARTITION OF article FOR VALUES FROM ('")
+                        .append(year).append("-01-01') TO ('").append(year + 1).append("-01-01');\n");
+                sql.append("CREATE TABLE article_references_y").append(year)
+                        .append(" PARTITION OF article_references FOR VALUES FROM (").append(year)
+                        .append(") TO (").append(year + 1).append(");\n");
+            }
+            sql.append("CREATE TABLE article_default PARTITION OF article DEFAULT;\n");
+            sql.append("CREATE TABLE article_references_default PARTITION OF article_references DEFAULT;\n");
+            stmt.execute(sql.toString());
+        }
+
+        @Override
+        public String toString() {
+            return from + "-" + to;
+        }
+    }
+
+    static final class ForeignKey {
+        final String table;
+        final String column;
+        final String references;
+        final String options;
+
+        ForeignKey(String table, String column, String references, String options) {
+            this.table = table;
+            this.column = column;
+            this.references = references;
+            this.options = options;
+        }
+
+        String name() {
+            return table + "_" + column + "_fkey";
+        }
+
+        String addSql(boolean notValid) {
+            return "ALTER TABLE " + table + " ADD CONSTRAINT " + name()
+                    + " FOREIGN KEY (" + column + ") REFERENCES " + references + options
+                    + (notValid ? " NOT VALID" : "");
+        }
+
+        String validateSql() {
+            return "ALTER TABLE " + table + " VALIDATE CONSTRAINT " + name();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.pubmed.service.impl;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * GoodLoader 的写入后端。
+ * <p>
+ * 每个方法向对应表追加一行，{@link #flush()} 把缓冲的行按 {@link LoaderTable} 的顺序写入数据库，
+ * 事务的提交仍由调用方负责。
+ */
+interface LoaderSink extends AutoCloseable {
+
+    void article(int id, String title, String pubModel, LocalDate created, LocalDate completed) throws SQLException;
+
+    void author(int id, String foreName, String lastName, String initials, boolean collective, String affiliation)
+            throws SQLException;
+
+    void articleAuthor(int articleId, int authorId) throws SQLException;
+
+    void journal(String id, String country, String issn, String title, String volume, String issue)
+            throws SQLException;
+
+    void articleJournal(int articleId, String journalId) throws SQLException;
+
+    void keyword(int id, String keyword) throws SQLException;
+
+    void articleKeyword(int articleId, int keywordId) throws SQLException;
+
+    void publicationType(String id, String name) throws SQLException;
+
+    void articlePublicationType(int articleId, String pubTypeId) throws SQLException;
+
+    void articleId(int id, int articleId, String type, String identifier) throws SQLException;
+
+    void grant(int id, String grantId, String acronym, String agency, String country) throws SQLException;
+
+    void articleGrant(int articleId, int grantId) throws SQLException;
+
+    /**
+     * @param citingYear 引用文章的创建年份，冗余写入引用行，见 {@link LoaderSchema.YearPartitions}
+     */
+    void reference(int articleId, int referenceId, int citingYear) throws SQLException;
+
+    /**
+     * 将所有表中缓冲的行写入数据库（不提交）。
+     */
+    void flush() throws SQLException;
+
+    @Override
+    void close() throws SQLException;
+}
@@ -0,0 +1,63 @@
+package io.pubmed.service.impl;
+
+/**
+ * GoodLoader 写入的目标表及其列顺序。
+ * <p>
+ * 枚举顺序即刷新顺序：被引用的父表总是排在引用它的子表之前，保证外键在同一事务内成立。
+ */
+enum LoaderTable {
+    ARTICLE("article", "id", "title", "pub_model", "date_created", "date_completed"),
+    AUTHORS("authors", "author_id", "fore_name", "last_name", "initials", "is_collective_name", "affiliation"),
+    ARTICLE_AUTHORS("article_authors", "article_id", "author_id"),
+    JOURNAL("journal", "id", "country", "issn", "title", "volume", "issue"),
+    ARTICLE_JOURNAL("article_journal", "journal_id", "article_id"),
+    KEYWORDS("keywords", "id", "keyword"),
+    ARTICLE_KEYWORDS("article_keywords", "article_id", "keyword_id"),
+    PUBLICATION_TYPES("publication_types", "id", "name"),
+    ARTICLE_PUBLICATION_TYPES("article_publication_types", "article_id", "pub_type_id"),
+    ARTICLE_IDS("article_ids", "id", "article_id", "type", "identifier"),
+    GRANT_INFO("grant_info", "id", "grant_id", "acronym", "agency", "country"),
+    ARTICLE_GRANTS("article_grants", "article_id", "grant_id"),
+    ARTICLE_REFERENCES("article_references", "article_id", "reference_id", "citing_year");
+
+    private final String tableName;
+    private final String[] columns;
+
+    LoaderTable(String tableName, String... columns) {
+        this.tableName = tableName;
+        this.columns = columns;
+    }
+
+    String tableName() {
+        return tableName;
+    }
+
+    int columnCount() {
+        return columns.length;
+    }
+
+    String columnList() {
+        return String.join(",", columns);
+    }
+
+    String insertSql() {
+        return "insert into " + tableName + "(" + columnList() + ")"
+                + " values(" + "?,".repeat(columns.length - 1) + "?)";
+    }
+
+    /**
+     * 以首列为键的 insert ... on conflict do update，用于增量导入时覆盖已存在的行。
+     */
+    String upsertSql() {
+        StringBuilder sql = new StringBuilder(insertSql())
+                .append(" on conflict (").append(columns[0]).append(") do update set ");
+        for (int i = 1; i < columns.length; i++) {
+            sql.append(i > 1 ? ", " : "").append(columns[i]).append(" = excluded.").append(columns[i]);
+        }
+        return sql.toString();
+    }
+
+    String copySql() {
+        return "COPY " + tableName + " (" + columnList() + ") FROM STDIN (FORMAT binary)";
+    }
+}
@@ -0,0 +1,119 @@
+package io.pubmed.service.impl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 用 {@link FileChannel#map} 把 NDJSON 文件映射到内存，并切成按换行对齐的 {@link NdjsonChunk}。
+ * <p>
+ * 每个分段都是映射区域的只读切片，读取线程只负责找换行位置，不解码也不复制。
+ * fastjson2 只能从堆上的 byte[] 解析，解析线程会把整个分段一次性复制到复用的数组中再逐行解析（见 {@link ImportPipeline}），
+ * 省掉的是逐行解码成 String 的开销，而不是这一次复制。文件按窗口分段映射，因此可以处理超过 2GB 的文件。
+ */
+final class MappedNdjsonReader implements NdjsonSource {
+
+    /** 单个映射窗口的大小 */
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int chunkSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private volatile long position;
+
+    MappedNdjsonReader(Path file, int chunkSize) throws IOException {
+        this(file, chunkSize, 0);
+    }
+
+    /**
+     * @param startOffset 开始读取的文件偏移，必须位于行首
+     */
+    MappedNdjsonReader(Path file, int chunkSize, long startOffset) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.chunkSize = chunkSize;
+        this.position = Math.min(startOffset, fileSize);
+    }
+
+    @Override
+    public long size() {
+        return fileSize;
+    }
+
+    @Override
+    public long bytesRead() {
+        return position;
+    }
+
+    @Override
+    public NdjsonChunk next() throws IOException {
+        if (position >= fileSize) {
+            return null;
+        }
+        while (true) {
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                map(position);
+            }
+            int from = (int) (position - windowStart);
+            int windowLimit = window.limit();
+            boolean windowReachesEof = windowStart + windowLimit == fileSize;
+            int end = lastNewlineBefore(from, (int) Math.min((long) from + chunkSize, windowLimit));
+            if (end < 0) {
+                // 一行比 chunkSize 还长，向后找到这一行的结尾
+                end = firstNewlineFrom((int) Math.min((long) from + chunkSize, windowLimit), windowLimit);
+            }
+            if (end < 0) {
+                if (windowReachesEof) {
+                    end = windowLimit;
+                } else if (from > 0) {
+                    // 当前窗口放不下这一行，从行首重新映射
+                    map(position);
+                    continue;
+                } else {
+                    throw new IOException("NDJSON line at offset " + position + " exceeds " + WINDOW_SIZE + " bytes");
+                }
+            }
+            NdjsonChunk chunk = new NdjsonChunk(window.slice(from, end - from).asReadOnlyBuffer(),
+                    position, windowStart + end);
+            position = windowStart + end;
+            return chunk;
+        }
+    }
+
+    /**
+     * @return [from, to) 内最后一个换行符之后的位置，没有换行符时返回 -1
+     */
+    private int lastNewlineBefore(int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (window.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private int firstNewlineFrom(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (window.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
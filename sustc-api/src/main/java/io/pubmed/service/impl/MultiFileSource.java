@@ -0,0 +1,194 @@
+package io.pubmed.service.impl;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 按文件名顺序读取多个 NDJSON 文件（例如 PubMed baseline 的 pubmed24nXXXX 分片），对外表现为一个 {@link NdjsonSource}。
+ * <p>
+ * 读取当前文件的同时，其后最多 workers - 1 个文件已经打开，压缩文件各自的解压线程提前解压并切好分段，
+ * 因此多个文件的读盘、解压和解析并行进行，同时打开的文件数和预读的内存都有上限。
+ * 分段仍按文件顺序交出，字典 id 由写入线程按这个顺序分配，结果与把所有文件依次拼接后导入相同。
+ * <p>
+ * 每个分段带有所属文件的序号 {@link NdjsonChunk#file}，偏移是该文件内的偏移，供逐文件的断点使用。
+ */
+final class MultiFileSource implements NdjsonSource {
+
+    private final List<Path> files;
+    private final long[] startOffsets;
+    private final int chunkSize;
+    private final int decompressThreads;
+    private final int workers;
+    private final long[] sizes;
+    private final long totalSize;
+    /** 需要读取的文件序号，跳过已经导入完的文件 */
+    private final int[] pending;
+    /** 已打开、尚未关闭的文件；关闭后置为 null，解析线程交还分段时可能仍在访问 */
+    private final AtomicReferenceArray<NdjsonSource> sources;
+
+    /** pending 中正在读取的位置 */
+    private volatile int current;
+    /** pending 中下一个要打开的位置 */
+    private volatile int opened;
+    /** 已读完或跳过的文件的大小之和 */
+    private volatile long finishedBytes;
+
+    /**
+     * @param startOffsets 每个文件开始读取的偏移，负数表示该文件已经导入完，整个跳过
+     * @param workers      同时打开的文件数
+     */
+    MultiFileSource(List<Path> files, long[] startOffsets, int chunkSize, int decompressThreads, int workers)
+            throws IOException {
+        this.files = files;
+        this.startOffsets = startOffsets;
+        this.chunkSize = chunkSize;
+        this.decompressThreads = decompressThreads;
+        this.workers = Math.max(1, workers);
+        this.sizes = new long[files.size()];
+        this.sources = new AtomicReferenceArray<>(files.size());
+        long total = 0;
+        long skipped = 0;
+        List<Integer> toRead = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            sizes[i] = Files.size(files.get(i));
+            total += sizes[i];
+            if (startOffsets[i] < 0) {
+                skipped += sizes[i];
+            } else {
+                toRead.add(i);
+            }
+        }
+        this.totalSize = total;
+        this.finishedBytes = skipped;
+        this.pending = toRead.stream().mapToInt(Integer::intValue).toArray();
+        try {
+            openAhead();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 把输入参数展开为按文件名排序的文件列表：目录取其中所有非隐藏的普通文件，
+     * 最后一级含有 * ? [ { 时按通配符匹配所在目录中的文件名，否则就是单个文件。
+     */
+    static List<Path> expand(String input) throws IOException {
+        int slash = Math.max(input.lastIndexOf('/'), input.lastIndexOf('\\'));
+        String name = input.substring(slash + 1);
+        List<Path> files;
+        if (name.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{')) {
+            Path dir = Paths.get(slash < 0 ? "." : input.substring(0, Math.max(slash, 1))).toAbsolutePath();
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+            files = list(dir, p -> matcher.matches(p.getFileName()));
+        } else {
+            Path path = Paths.get(input).toAbsolutePath();
+            if (!Files.isDirectory(path)) {
+                return List.of(path);
+            }
+            files = list(path, p -> !p.getFileName().toString().startsWith("."));
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No input files match " + input);
+        }
+        return files;
+    }
+
+    private static List<Path> list(Path dir, Predicate<Path> filter) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(Files::isRegularFile).filter(filter).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void openAhead() throws IOException {
+        while (opened < pending.length && opened < current + workers) {
+            int file = pending[opened];
+            sources.set(file, NdjsonSource.open(files.get(file), chunkSize, startOffsets[file], decompressThreads));
+            opened++;
+        }
+    }
+
+    @Override
+    public NdjsonChunk next() throws IOException {
+        while (current < pending.length) {
+            int file = pending[current];
+            NdjsonChunk chunk = sources.get(file).next();
+            if (chunk != null) {
+                return new NdjsonChunk(chunk.data, chunk.startOffset, chunk.endOffset, file);
+            }
+            // 解析线程可能还在使用该文件的分段：内存映射由 GC 释放，解压缓冲区交还时丢弃即可
+            NdjsonSource done = sources.getAndSet(file, null);
+            done.close();
+            finishedBytes += sizes[file];
+            current++;
+            openAhead();
+        }
+        return null;
+    }
+
+    @Override
+    public void release(NdjsonChunk chunk) {
+        NdjsonSource source = sources.get(chunk.file);
+        if (source != null) {
+            source.release(chunk);
+        }
+    }
+
+    @Override
+    public int queuedChunks() {
+        int queued = 0;
+        for (int i = current; i < opened; i++) {
+            NdjsonSource source = sources.get(pending[i]);
+            if (source != null) {
+                queued += source.queuedChunks();
+            }
+        }
+        return queued;
+    }
+
+    @Override
+    public long size() {
+        return totalSize;
+    }
+
+    @Override
+    public long bytesRead() {
+        long read = finishedBytes;
+        for (int i = current; i < opened; i++) {
+            NdjsonSource source = sources.get(pending[i]);
+            if (source != null) {
+                read += source.bytesRead();
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (int i = 0; i < sources.length(); i++) {
+            NdjsonSource source = sources.getAndSet(i, null);
+            if (source == null) {
+                continue;
+            }
+            try {
+                source.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
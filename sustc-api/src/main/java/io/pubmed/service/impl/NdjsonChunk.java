@@ -0,0 +1,29 @@
+package io.pubmed.service.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 输入文件中按换行对齐的一段字节，包含若干完整的 NDJSON 行。
+ */
+final class NdjsonChunk {
+
+    /** 该段内容，position 到 limit 之间为有效数据；内存映射读取时是直接缓冲区，解析前整段复制一次 */
+    final ByteBuffer data;
+    /** 该段在文件中的起始偏移 */
+    final long startOffset;
+    /** 该段结束后的文件偏移，即下一段的起点 */
+    final long endOffset;
+    /** 所属文件在 {@link MultiFileSource} 中的序号，单个文件时为 0 */
+    final int file;
+
+    NdjsonChunk(ByteBuffer data, long startOffset, long endOffset) {
+        this(data, startOffset, endOffset, 0);
+    }
+
+    NdjsonChunk(ByteBuffer data, long startOffset, long endOffset, int file) {
+        this.data = data;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.file = file;
+    }
+}
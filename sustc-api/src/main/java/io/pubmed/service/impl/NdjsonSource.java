@@ -0,0 +1,77 @@
+package io.pubmed.service.impl;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 按换行对齐的 NDJSON 分段来源，由 {@link ImportPipeline} 的读取线程调用。
+ * <p>
+ * 分段的 startOffset/endOffset 是解压后数据中的偏移，断点续传时从同一偏移继续。
+ */
+interface NdjsonSource extends AutoCloseable {
+
+    /**
+     * @return 下一个分段，输入读完时返回 null
+     */
+    NdjsonChunk next() throws IOException;
+
+    /**
+     * 解析线程用完分段后交还，来源可以复用其中的缓冲区。
+     */
+    default void release(NdjsonChunk chunk) {
+    }
+
+    /**
+     * @return 已切分好、等待读取线程取走的分段数，内存映射读取时为 0
+     */
+    default int queuedChunks() {
+        return 0;
+    }
+
+    /**
+     * @return 输入文件在磁盘上的大小
+     */
+    long size();
+
+    /**
+     * @return 已从磁盘读取的字节数，与 {@link #size()} 一起用于估计进度
+     */
+    long bytesRead();
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * 按文件头打开输入：gzip 和 zstd 在独立线程中边解压边切分，其余按未压缩的 NDJSON 内存映射读取。
+     *
+     * @param startOffset        解压后数据中开始读取的偏移，必须位于行首
+     * @param decompressThreads  分块 gzip（BGZF）并行解压使用的线程数
+     */
+    static NdjsonSource open(Path file, int chunkSize, long startOffset, int decompressThreads) throws IOException {
+        byte[] magic = new byte[4];
+        int n;
+        try (InputStream in = Files.newInputStream(file)) {
+            n = in.readNBytes(magic, 0, magic.length);
+        }
+        if (n >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return StreamNdjsonReader.open(file, chunkSize, startOffset, raw -> {
+                BufferedInputStream in = new BufferedInputStream(raw, 1 << 16);
+                return ParallelBgzfInputStream.isBgzf(in)
+                        ? new ParallelBgzfInputStream(in, decompressThreads)
+                        : new GZIPInputStream(in, 1 << 16);
+            });
+        }
+        if (n == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return StreamNdjsonReader.open(file, chunkSize, startOffset,
+                    raw -> new ZstdInputStream(new BufferedInputStream(raw, 1 << 16)));
+        }
+        return new MappedNdjsonReader(file, chunkSize, startOffset);
+    }
+}
@@ -0,0 +1,196 @@
+package io.pubmed.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 并行解压分块 gzip（BGZF，bgzip 生成的多成员 gzip）。
+ * <p>
+ * BGZF 每个成员的头部记录了成员的压缩长度，不解压就能找到成员边界，于是按顺序读入若干成员组成一批，
+ * 交给线程池并行解压，再按原顺序输出。普通的多成员 gzip 无法预知边界，仍由 {@link java.util.zip.GZIPInputStream} 顺序解压。
+ */
+final class ParallelBgzfInputStream extends InputStream {
+
+    /** 每批解压的压缩数据量 */
+    private static final int BATCH_BYTES = 1 << 20;
+    /** BGZF 成员头部的固定长度：gzip 头 12 字节 + BC 子字段 6 字节 */
+    private static final int HEADER_SIZE = 18;
+
+    private final InputStream in;
+    private final ExecutorService pool;
+    private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private final int maxInFlight;
+    private boolean eof;
+
+    private byte[] current = new byte[0];
+    private int pos;
+
+    ParallelBgzfInputStream(InputStream in, int threads) {
+        this.in = in;
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "loader-inflate-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxInFlight = threads * 2;
+    }
+
+    /**
+     * 查看输入开头是否是 BGZF 成员，不消耗输入。
+     */
+    static boolean isBgzf(InputStream in) throws IOException {
+        in.mark(HEADER_SIZE);
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        in.reset();
+        return header.length == HEADER_SIZE && blockSize(header) > 0;
+    }
+
+    /**
+     * @return 成员的总长度（含头尾），不是 BGZF 成员头时返回 -1
+     */
+    private static int blockSize(byte[] h) {
+        boolean gzip = (h[0] & 0xff) == 0x1f && (h[1] & 0xff) == 0x8b && h[2] == 8 && (h[3] & 4) != 0;
+        boolean bc = u16(h, 10) == 6 && h[12] == 'B' && h[13] == 'C' && u16(h, 14) == 2;
+        return gzip && bc ? u16(h, 16) + 1 : -1;
+    }
+
+    private static int u16(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8;
+    }
+
+    private static int i32(byte[] b, int off) {
+        return u16(b, off) | u16(b, off + 2) << 16;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        while (pos == current.length) {
+            while (!eof && inFlight.size() < maxInFlight) {
+                List<byte[]> blocks = readBatch();
+                if (blocks.isEmpty()) {
+                    eof = true;
+                } else {
+                    inFlight.add(pool.submit(() -> inflate(blocks)));
+                }
+            }
+            Future<byte[]> next = inFlight.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                current = next.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while inflating", e);
+            }
+            pos = 0;
+        }
+        return true;
+    }
+
+    /**
+     * 顺序读入一批完整的成员，只读不解压。
+     */
+    private List<byte[]> readBatch() throws IOException {
+        List<byte[]> blocks = new ArrayList<>();
+        int bytes = 0;
+        while (bytes < BATCH_BYTES) {
+            byte[] header = in.readNBytes(HEADER_SIZE);
+            if (header.length == 0) {
+                break;
+            }
+            int size = header.length == HEADER_SIZE ? blockSize(header) : -1;
+            if (size < HEADER_SIZE + 8) {
+                throw new ZipException("Not a BGZF block");
+            }
+            byte[] block = new byte[size];
+            System.arraycopy(header, 0, block, 0, HEADER_SIZE);
+            if (in.readNBytes(block, HEADER_SIZE, size - HEADER_SIZE) != size - HEADER_SIZE) {
+                throw new ZipException("Truncated BGZF block");
+            }
+            blocks.add(block);
+            bytes += size;
+        }
+        return blocks;
+    }
+
+    private static byte[] inflate(List<byte[]> blocks) throws IOException {
+        int total = 0;
+        for (byte[] block : blocks) {
+            total += i32(block, block.length - 4);
+        }
+        byte[] out = new byte[total];
+        int off = 0;
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        try {
+            for (byte[] block : blocks) {
+                int isize = i32(block, block.length - 4);
+                inflater.reset();
+                inflater.setInput(block, HEADER_SIZE, block.length - HEADER_SIZE - 8);
+                int n = 0;
+                while (n < isize && !inflater.finished()) {
+                    int r = inflater.inflate(out, off + n, isize - n);
+                    if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += r;
+                }
+                crc.reset();
+                crc.update(out, off, n);
+                if (n != isize || (int) crc.getValue() != i32(block, block.length - 8)) {
+                    throw new ZipException("Corrupt BGZF block");
+                }
+                off += n;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        in.close();
+    }
+}
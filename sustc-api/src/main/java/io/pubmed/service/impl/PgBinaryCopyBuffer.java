@@ -0,0 +1,162 @@
+package io.pubmed.service.impl;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * 以 PostgreSQL {@code COPY ... (FORMAT binary)} 格式缓冲一张表的行。
+ * <p>
+ * 字符串直接编码为 UTF-8 写入字节数组，不产生中间对象；{@link #copyIn} 一次性把整个缓冲区发给服务器。
+ */
+final class PgBinaryCopyBuffer {
+
+    private static final byte[] HEADER = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+            0, 0, 0, 0,     // flags
+            0, 0, 0, 0      // header extension length
+    };
+    /** PostgreSQL 日期以 2000-01-01 为第 0 天。 */
+    private static final long PG_EPOCH_DAY = LocalDate.of(2000, 1, 1).toEpochDay();
+
+    private byte[] buf;
+    private int pos;
+    private int rows;
+
+    PgBinaryCopyBuffer(int initialCapacity) {
+        buf = new byte[Math.max(initialCapacity, 64)];
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int size() {
+        return pos;
+    }
+
+    void startRow(int fieldCount) {
+        if (pos == 0) {
+            ensure(HEADER.length);
+            System.arraycopy(HEADER, 0, buf, 0, HEADER.length);
+            pos = HEADER.length;
+        }
+        ensure(2);
+        putShort(fieldCount);
+        rows++;
+    }
+
+    void writeNull() {
+        ensure(4);
+        putInt(-1);
+    }
+
+    void writeInt(int value) {
+        ensure(8);
+        putInt(4);
+        putInt(value);
+    }
+
+    void writeBoolean(boolean value) {
+        ensure(5);
+        putInt(1);
+        buf[pos++] = (byte) (value ? 1 : 0);
+    }
+
+    void writeDate(LocalDate date) {
+        if (date == null) {
+            writeNull();
+            return;
+        }
+        ensure(8);
+        putInt(4);
+        putInt((int) (date.toEpochDay() - PG_EPOCH_DAY));
+    }
+
+    void writeText(String s) {
+        if (s == null) {
+            writeNull();
+            return;
+        }
+        int len = s.length();
+        // UTF-8 每个 char 最多 3 个字节（代理对两个 char 共 4 个字节）
+        ensure(4 + len * 3);
+        int lengthAt = pos;
+        pos += 4;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[pos++] = '?';
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        int byteLength = pos - lengthAt - 4;
+        buf[lengthAt] = (byte) (byteLength >>> 24);
+        buf[lengthAt + 1] = (byte) (byteLength >>> 16);
+        buf[lengthAt + 2] = (byte) (byteLength >>> 8);
+        buf[lengthAt + 3] = (byte) byteLength;
+    }
+
+    /**
+     * 通过 COPY 把缓冲的行写入数据库并清空缓冲区。
+     *
+     * @return 服务器报告的写入行数
+     */
+    long copyIn(CopyManager copyManager, String copySql) throws SQLException {
+        if (rows == 0) {
+            return 0;
+        }
+        ensure(2);
+        putShort(-1);
+        CopyIn copy = copyManager.copyIn(copySql);
+        try {
+            copy.writeToCopy(buf, 0, pos);
+            return copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+            clear();
+        }
+    }
+
+    void clear() {
+        pos = 0;
+        rows = 0;
+    }
+
+    private void ensure(int extra) {
+        if (pos + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + extra));
+        }
+    }
+
+    private void putShort(int v) {
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+    }
+
+    private void putInt(int v) {
+        buf[pos++] = (byte) (v >>> 24);
+        buf[pos++] = (byte) (v >>> 16);
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+    }
+}
@@ -0,0 +1,352 @@
+package io.pubmed.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 对解析好的记录去重、分配作者/关键词/基金/文章标识的自增 id，并写入 {@link LoaderSink}。
+ * <p>
+ * 只能在单个线程中按输入顺序调用，这样 id 的分配与输入文件的顺序一一对应，每次导入结果都相同。
+ * 去重字典是 {@link Utf8Dictionary}，查找时不拼接字符串，也不装箱。
+ * <p>
+ * 新加入去重字典的条目同时记入日志，{@link #drainJournal()} 取出上次以来的增量写入断点，
+ * 断点续传时按顺序 {@link #replay} 这些增量即可恢复字典。
+ */
+final class RecordResolver {
+
+    int authorid = 1;
+    int keyid = 1;
+    int article_idsid = 1;
+    int grant_zizeng_id = 1;
+
+    /** 团体作者：collective_name -> author_id */
+    private final Utf8Dictionary b = new Utf8Dictionary();
+    /** 只有 last_name 的个人作者：last_name -> author_id */
+    private final Utf8Dictionary c = new Utf8Dictionary();
+    /** 完整姓名的个人作者：(fore_name, last_name, initials) -> author_id */
+    private final Utf8Dictionary d = new Utf8Dictionary();
+    /** keyword -> keyword id */
+    private final Utf8Dictionary key = new Utf8Dictionary();
+    /** agency -> grant_info id */
+    private final Utf8Dictionary grant_unique = new Utf8Dictionary();
+    /** 已写入的期刊 id，值不使用 */
+    private final Utf8Dictionary journalunique = new Utf8Dictionary();
+    /** 已写入的出版类型 id -> 加入顺序，用于文章内去重 */
+    private final Utf8Dictionary publication_typeunique = new Utf8Dictionary();
+
+    /** 当前文章内已写入的关联，避免同一篇文章重复关联 */
+    private final IntSet a = new IntSet();
+
+    private static final byte COLLECTIVE_AUTHOR = 1;
+    private static final byte LAST_NAME_AUTHOR = 2;
+    private static final byte FULL_NAME_AUTHOR = 3;
+    private static final byte KEYWORD = 4;
+    private static final byte GRANT = 5;
+    private static final byte JOURNAL = 6;
+    private static final byte PUBLICATION_TYPE = 7;
+
+    /** 不为 null 时累计每篇被引用文章逐年的引用次数，见 {@link LoaderAggregates} */
+    YearCounts citations;
+    /** 不为 null 时累计每个关键词逐年的文章数 */
+    YearCounts keywordYears;
+
+    /** 为 false 时不记录字典日志，用于不保存断点的增量导入 */
+    boolean journaling = true;
+    /** 上次 drainJournal 之后新加入字典的条目 */
+    private final ByteArrayOutputStream journalBytes = new ByteArrayOutputStream();
+    private final DataOutputStream journal = new DataOutputStream(journalBytes);
+
+    void apply(ArticleRecord r, LoaderSink sink) throws SQLException {
+        int id = r.id;
+        sink.article(id, r.title, r.pubModel, r.created, r.completed);
+
+        //------------------------------------------------------------add author
+        a.clear();
+        for (int i = 0; i < r.authors.size(); i++) {
+            ArticleRecord.Author author = r.authors.get(i);
+            Utf8Dictionary dict = authorDictionary(author.collective, author.foreName, author.initials);
+            int store = dict == d
+                    ? d.get(author.foreName, author.lastName, author.initials)
+                    : dict.get(author.lastName);
+            if (store == Utf8Dictionary.MISSING) {
+                store = authorid++;
+                dict.putMissing(store);
+                log(dict == b ? COLLECTIVE_AUTHOR : dict == c ? LAST_NAME_AUTHOR : FULL_NAME_AUTHOR, dict, store);
+                sink.author(store, author.foreName, author.lastName, author.initials, author.collective,
+                        author.affiliation);
+            }
+            if (a.add(store)) {
+                sink.articleAuthor(id, store);
+            }
+        }
+
+        //--------------------------------------------------------add keywords
+        a.clear();
+        for (String keyword : r.keywords) {
+            int store = key.get(keyword);
+            if (store == Utf8Dictionary.MISSING) {
+                store = keyid++;
+                key.putMissing(store);
+                log(KEYWORD, key, store);
+                sink.keyword(store, keyword);
+            }
+            if (a.add(store)) {
+                sink.articleKeyword(id, store);
+                if (keywordYears != null) {
+                    keywordYears.add(store, r.completed == null ? 0 : r.completed.getYear());
+                }
+            }
+        }
+
+        //--------------------------------------------------------------------add journal
+        if (journalunique.get(r.journalId) == Utf8Dictionary.MISSING) {
+            journalunique.putMissing(0);
+            log(JOURNAL, journalunique, 0);
+            sink.journal(r.journalId, r.journalCountry, r.journalIssn, r.journalTitle, r.journalVolume, r.journalIssue);
+        }
+        sink.articleJournal(id, r.journalId);
+
+        //------------------------------------------------------------------add publication_type
+        a.clear();
+        for (int i = 0; i < r.publicationTypes.size(); i++) {
+            ArticleRecord.PublicationType p = r.publicationTypes.get(i);
+            int store = publication_typeunique.get(p.id);
+            if (store == Utf8Dictionary.MISSING) {
+                store = publication_typeunique.size() + 1;
+                publication_typeunique.putMissing(store);
+                log(PUBLICATION_TYPE, publication_typeunique, store);
+                sink.publicationType(p.id, p.name);
+            }
+            if (a.add(store)) {
+                sink.articlePublicationType(id, p.id);
+            }
+        }
+
+        //----------------------------------------------------------------add article_ids
+        for (int i = 0; i < r.articleIds.size(); i++) {
+            ArticleRecord.ArticleId ai = r.articleIds.get(i);
+            sink.articleId(article_idsid++, id, ai.type, ai.identifier);
+        }
+
+        //------------------------------------------------------------------------------------add reference
+        // 缺少创建日期的记录在写入文章行时就会失败，年份填 0 即可
+        int year = r.created != null ? r.created.getYear() : 0;
+        for (int i = 0; i < r.referenceCount; i++) {
+            sink.reference(id, r.references[i], year);
+        }
+        if (citations != null && r.created != null) {
+            for (int i = 0; i < r.referenceCount; i++) {
+                citations.add(r.references[i], year);
+            }
+        }
+
+        //----------------------------------------------------------------------add grant
+        a.clear();
+        for (int i = 0; i < r.grants.size(); i++) {
+            ArticleRecord.Grant g = r.grants.get(i);
+            int store = grant_unique.get(g.agency);
+            if (store == Utf8Dictionary.MISSING) {
+                store = grant_zizeng_id++;
+                grant_unique.putMissing(store);
+                log(GRANT, grant_unique, store);
+                sink.grant(store, g.grantId, g.acronym, g.agency, g.country);
+            }
+            if (a.add(store)) {
+                sink.articleGrant(id, store);
+            }
+        }
+    }
+
+    /**
+     * @return 去重字典和年份统计占用的堆内存（字节）。由计量线程读取，与写入线程并发时只是近似值
+     */
+    long memoryBytes() {
+        long bytes = b.memoryBytes() + c.memoryBytes() + d.memoryBytes() + key.memoryBytes()
+                + grant_unique.memoryBytes() + journalunique.memoryBytes() + publication_typeunique.memoryBytes();
+        YearCounts counts = citations;
+        if (counts != null) {
+            bytes += counts.memoryBytes();
+        }
+        counts = keywordYears;
+        if (counts != null) {
+            bytes += counts.memoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 团体作者、只有 last_name 的作者和完整姓名的作者分别去重，与 Authors 表上的三个唯一部分索引对应。
+     */
+    private Utf8Dictionary authorDictionary(boolean collective, String foreName, String initials) {
+        if (collective) {
+            return b;
+        } else if ("".equals(foreName) && "".equals(initials)) {
+            return c;
+        } else {
+            return d;
+        }
+    }
+
+    /**
+     * 从已导入的表重建去重字典，并把 id 计数器设为各表当前最大 id 之后，用于在已有数据上增量导入。
+     * 连接需关闭自动提交，结果集才会按 fetch size 分批读取。
+     */
+    void loadDictionaries(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.setFetchSize(10000);
+            try (ResultSet rs = stmt.executeQuery(
+                    "select author_id, fore_name, last_name, initials, is_collective_name from authors")) {
+                while (rs.next()) {
+                    String foreName = rs.getString(2);
+                    String lastName = rs.getString(3);
+                    String initials = rs.getString(4);
+                    Utf8Dictionary dict = authorDictionary(rs.getBoolean(5), foreName, initials);
+                    int found = dict == d ? d.get(foreName, lastName, initials) : dict.get(lastName);
+                    if (found == Utf8Dictionary.MISSING) {
+                        dict.putMissing(rs.getInt(1));
+                    }
+                }
+            }
+            loadDictionary(stmt, "select keyword, id from keywords", key);
+            loadDictionary(stmt, "select agency, id from grant_info", grant_unique);
+            loadDictionary(stmt, "select id, 0 from journal", journalunique);
+            loadDictionary(stmt, "select id, row_number() over () from publication_types", publication_typeunique);
+            try (ResultSet rs = stmt.executeQuery("select (select coalesce(max(author_id), 0) + 1 from authors),"
+                    + " (select coalesce(max(id), 0) + 1 from keywords),"
+                    + " (select coalesce(max(id), 0) + 1 from article_ids),"
+                    + " (select coalesce(max(id), 0) + 1 from grant_info)")) {
+                rs.next();
+                authorid = rs.getInt(1);
+                keyid = rs.getInt(2);
+                article_idsid = rs.getInt(3);
+                grant_zizeng_id = rs.getInt(4);
+            }
+        }
+    }
+
+    /**
+     * 把查询结果的 (键, 值) 加入字典，重复的键保留先出现的值。
+     */
+    private static void loadDictionary(Statement stmt, String sql, Utf8Dictionary dict) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                if (dict.get(rs.getString(1)) == Utf8Dictionary.MISSING) {
+                    dict.putMissing(rs.getInt(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出并清空上次调用以来新加入字典的条目。
+     */
+    byte[] drainJournal() {
+        byte[] entries = journalBytes.toByteArray();
+        journalBytes.reset();
+        return entries;
+    }
+
+    /**
+     * 按顺序重放 {@link #drainJournal()} 取出的条目，恢复去重字典。id 计数器由调用方另行恢复。
+     */
+    void replay(byte[] entries) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entries));
+        byte[] k = new byte[256];
+        while (in.available() > 0) {
+            byte kind = in.readByte();
+            int length = in.readInt();
+            if (k.length < length) {
+                k = new byte[Math.max(length, k.length << 1)];
+            }
+            in.readFully(k, 0, length);
+            int id = in.readInt();
+            Utf8Dictionary dict = switch (kind) {
+                case COLLECTIVE_AUTHOR -> b;
+                case LAST_NAME_AUTHOR -> c;
+                case FULL_NAME_AUTHOR -> d;
+                case KEYWORD -> key;
+                case GRANT -> grant_unique;
+                case JOURNAL -> journalunique;
+                case PUBLICATION_TYPE -> publication_typeunique;
+                default -> throw new IOException("Corrupt dictionary journal, entry kind " + kind);
+            };
+            dict.putEncoded(k, 0, length, id);
+        }
+    }
+
+    /**
+     * 记录 dict 刚加入的键（即它最近一次查找的键）。
+     */
+    private void log(byte kind, Utf8Dictionary dict, int id) {
+        if (!journaling) {
+            return;
+        }
+        try {
+            journal.writeByte(kind);
+            journal.writeInt(dict.lastKeyLength());
+            journal.write(dict.lastKey(), 0, dict.lastKeyLength());
+            journal.writeInt(id);
+        } catch (IOException e) {
+            // ByteArrayOutputStream 不会抛出 IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 文章内去重用的 int 集合（元素为正数），开放寻址，clear 只清除用过的槽位，复用时不分配对象。
+     */
+    private static final class IntSet {
+        private int[] slots = new int[64];
+        private int[] used = new int[32];
+        private int size;
+
+        boolean add(int value) {
+            int mask = slots.length - 1;
+            int i = (value * 0x9e3779b9) >>> 16 & mask;
+            while (slots[i] != 0) {
+                if (slots[i] == value) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = value;
+            if (size == used.length) {
+                used = Arrays.copyOf(used, size << 1);
+            }
+            used[size++] = i;
+            if (size * 2 > slots.length) {
+                grow();
+            }
+            return true;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                slots[used[i]] = 0;
+            }
+            size = 0;
+        }
+
+        private void grow() {
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = slots[used[i]];
+            }
+            slots = new int[slots.length << 1];
+            used = new int[slots.length >> 1];
+            int n = size;
+            size = 0;
+            for (int i = 0; i < n; i++) {
+                add(values[i]);
+            }
+        }
+    }
+}
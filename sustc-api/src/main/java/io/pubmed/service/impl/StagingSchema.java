@@ -0,0 +1,208 @@
+package io.pubmed.service.impl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * --staging 模式使用的 UNLOGGED 暂存表，以及把暂存表合并到正式表的集合操作。
+ * <p>
+ * 暂存表不写 WAL、没有任何约束，{@link StagingWriter} 只管追加原始行；作者、关键词、基金、期刊和出版类型的去重
+ * 在合并时由 SQL 完成（窗口函数按首次出现的 (seq, pos) 编号），Java 端不需要保存去重字典，内存不再随数据量增长。
+ * 分配的 id 与 {@link RecordResolver} 相同，因此两种模式导入的结果一致。
+ */
+final class StagingSchema {
+
+    /**
+     * 暂存表及其列。seq 为记录序号，pos 为元素在记录内列表中的位置。
+     */
+    enum Table {
+        ARTICLE("stg_article", "seq int", "id int", "title text", "pub_model text", "date_created date",
+                "date_completed date"),
+        AUTHOR("stg_author", "seq int", "pos int", "article_id int", "fore_name text", "last_name text",
+                "initials text", "is_collective boolean", "affiliation text"),
+        KEYWORD("stg_keyword", "seq int", "pos int", "article_id int", "keyword text"),
+        JOURNAL("stg_journal", "seq int", "article_id int", "id text", "country text", "issn text", "title text",
+                "volume text", "issue text"),
+        PUBLICATION_TYPE("stg_publication_type", "seq int", "pos int", "article_id int", "id text", "name text"),
+        ARTICLE_ID("stg_article_id", "seq int", "pos int", "article_id int", "type text", "identifier text"),
+        REFERENCE("stg_reference", "article_id int", "reference_id int", "citing_year int"),
+        GRANT("stg_grant", "seq int", "pos int", "article_id int", "grant_id text", "acronym text", "agency text",
+                "country text");
+
+        private final String tableName;
+        private final String[] columns;
+
+        Table(String tableName, String... columns) {
+            this.tableName = tableName;
+            this.columns = columns;
+        }
+
+        String tableName() {
+            return tableName;
+        }
+
+        int columnCount() {
+            return columns.length;
+        }
+
+        String createSql() {
+            return "CREATE UNLOGGED TABLE " + tableName + " (" + String.join(", ", columns) + ")";
+        }
+
+        String copySql() {
+            StringBuilder names = new StringBuilder();
+            for (String column : columns) {
+                names.append(names.length() > 0 ? "," : "").append(column, 0, column.indexOf(' '));
+            }
+            return "COPY " + tableName + " (" + names + ") FROM STDIN (FORMAT binary)";
+        }
+    }
+
+    /** 合并过程中生成的中间表 */
+    private static final String[] RESOLVED_TABLES = {"stg_author_id", "stg_keyword_id", "stg_grant_id"};
+
+    /**
+     * 按顺序执行的合并语句。每个去重实体先生成带 id 的中间表（首次出现的行 seq = first_seq），再写入实体表和关联表。
+     */
+    static final String[] MERGE = {
+            "INSERT INTO article (id, title, pub_model, date_created, date_completed)"
+                    + " SELECT id, title, pub_model, date_created, date_completed FROM stg_article ORDER BY seq",
+
+            // 作者：团体作者按 last_name、只有 last_name 的个人作者按 last_name、其余按 (fore_name, last_name, initials) 去重
+            """
+            CREATE UNLOGGED TABLE stg_author_id AS
+            SELECT t.*, dense_rank() OVER (ORDER BY first_seq, first_pos)::int AS author_id
+            FROM (SELECT s.*,
+                         first_value(seq) OVER k AS first_seq,
+                         first_value(pos) OVER k AS first_pos
+                  FROM (SELECT a.*,
+                               CASE WHEN is_collective THEN 1
+                                    WHEN fore_name = '' AND initials = '' THEN 2
+                                    ELSE 3 END AS cls
+                        FROM stg_author a) s
+                  WINDOW k AS (PARTITION BY cls, CASE WHEN cls = 3 THEN fore_name END, last_name,
+                                            CASE WHEN cls = 3 THEN initials END
+                               ORDER BY seq, pos)) t
+            """,
+            "INSERT INTO authors (author_id, fore_name, last_name, initials, is_collective_name, affiliation)"
+                    + " SELECT author_id, fore_name, last_name, initials, is_collective, affiliation"
+                    + " FROM stg_author_id WHERE seq = first_seq AND pos = first_pos ORDER BY author_id",
+            "INSERT INTO article_authors (article_id, author_id)"
+                    + " SELECT DISTINCT article_id, author_id FROM stg_author_id",
+
+            """
+            CREATE UNLOGGED TABLE stg_keyword_id AS
+            SELECT t.*, dense_rank() OVER (ORDER BY first_seq, first_pos)::int AS keyword_id
+            FROM (SELECT k.*,
+                         first_value(seq) OVER w AS first_seq,
+                         first_value(pos) OVER w AS first_pos
+                  FROM stg_keyword k
+                  WINDOW w AS (PARTITION BY keyword ORDER BY seq, pos)) t
+            """,
+            "INSERT INTO keywords (id, keyword)"
+                    + " SELECT keyword_id, keyword FROM stg_keyword_id"
+                    + " WHERE seq = first_seq AND pos = first_pos ORDER BY keyword_id",
+            "INSERT INTO article_keywords (article_id, keyword_id)"
+                    + " SELECT DISTINCT article_id, keyword_id FROM stg_keyword_id",
+
+            "INSERT INTO journal (id, country, issn, title, volume, issue)"
+                    + " SELECT DISTINCT ON (id) id, country, issn, title, volume, issue FROM stg_journal ORDER BY id, seq",
+            "INSERT INTO article_journal (journal_id, article_id) SELECT id, article_id FROM stg_journal",
+
+            "INSERT INTO publication_types (id, name)"
+                    + " SELECT DISTINCT ON (id) id, name FROM stg_publication_type ORDER BY id, seq, pos",
+            "INSERT INTO article_publication_types (article_id, pub_type_id)"
+                    + " SELECT DISTINCT article_id, id FROM stg_publication_type",
+
+            "INSERT INTO article_ids (id, article_id, type, identifier)"
+                    + " SELECT row_number() OVER (ORDER BY seq, pos), article_id, type, identifier FROM stg_article_id",
+
+            "INSERT INTO article_references (article_id, reference_id, citing_year)"
+                    + " SELECT article_id, reference_id, citing_year FROM stg_reference",
+
+            // 基金按 agency 去重
+            """
+            CREATE UNLOGGED TABLE stg_grant_id AS
+            SELECT t.*, dense_rank() OVER (ORDER BY first_seq, first_pos)::int AS grant_info_id
+            FROM (SELECT g.*,
+                         first_value(seq) OVER w AS first_seq,
+                         first_value(pos) OVER w AS first_pos
+                  FROM stg_grant g
+                  WINDOW w AS (PARTITION BY agency ORDER BY seq, pos)) t
+            """,
+            "INSERT INTO grant_info (id, grant_id, acronym, agency, country)"
+                    + " SELECT grant_info_id, grant_id, acronym, agency, country FROM stg_grant_id"
+                    + " WHERE seq = first_seq AND pos = first_pos ORDER BY grant_info_id",
+            "INSERT INTO article_grants (article_id, grant_id)"
+                    + " SELECT DISTINCT article_id, grant_info_id FROM stg_grant_id",
+    };
+
+    private StagingSchema() {
+    }
+
+    static void dropTables(Statement stmt) throws SQLException {
+        for (Table table : Table.values()) {
+            stmt.execute("drop table if exists " + table.tableName + ";");
+        }
+        for (String table : RESOLVED_TABLES) {
+            stmt.execute("drop table if exists " + table + ";");
+        }
+    }
+
+    static void createTables(Statement stmt) throws SQLException {
+        dropTables(stmt);
+        for (Table table : Table.values()) {
+            stmt.execute(table.createSql());
+        }
+    }
+
+    /**
+     * 把暂存表合并到正式表，按触发器规则校验合并后的行，最后删除暂存表。在调用方的事务中执行。
+     */
+    static void merge(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            // 窗口函数和去重的排序尽量在内存中完成
+            stmt.execute("SET LOCAL work_mem = '256MB'");
+            for (String sql : MERGE) {
+                stmt.execute(sql);
+            }
+            validate(stmt);
+            dropTables(stmt);
+        }
+    }
+
+    /**
+     * 正式表上的触发器在合并之后才建立，这里用查询执行与 {@link LoaderSchema#TRIGGERS_AND_VIEWS} 相同的检查。
+     */
+    private static void validate(Statement stmt) throws SQLException {
+        String article = first(stmt, "SELECT id FROM article WHERE date_completed < date_created LIMIT 1");
+        if (article != null) {
+            throw new SQLException("date_completed cannot be earlier than date_created (article " + article + ")");
+        }
+        if (first(stmt, "SELECT author_id FROM authors WHERE is_collective_name"
+                + " AND (last_name IS NULL OR last_name = '') LIMIT 1") != null) {
+            throw new SQLException("Collective name must be provided when is_collective is TRUE");
+        }
+        if (first(stmt, "SELECT author_id FROM authors WHERE is_collective_name"
+                + " AND (fore_name != '' OR initials != '') LIMIT 1") != null) {
+            throw new SQLException("Fore_name, last_name, and initials must be empty when is_collective is TRUE");
+        }
+        if (first(stmt, "SELECT author_id FROM authors WHERE NOT is_collective_name AND last_name = '' LIMIT 1")
+                != null) {
+            throw new SQLException("Last name must be provided when is_collective is FALSE");
+        }
+        String journal = first(stmt, "SELECT id FROM journal"
+                + " WHERE NOT coalesce(issn = '' OR issn ~ '^[A-Za-z0-9]{4}-[A-Za-z0-9]{4}$', false) LIMIT 1");
+        if (journal != null) {
+            throw new SQLException("Invalid ISSN format in Journal (journal " + journal + ")");
+        }
+    }
+
+    private static String first(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
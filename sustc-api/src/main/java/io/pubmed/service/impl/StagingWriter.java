@@ -0,0 +1,167 @@
+package io.pubmed.service.impl;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * --staging 模式的写入端：不去重、不分配 id，把解析好的记录原样以 binary COPY 写入 {@link StagingSchema} 的 UNLOGGED 暂存表。
+ * <p>
+ * 每行带上记录序号 seq 和在记录内列表中的位置 pos，合并时按 (seq, pos) 的首次出现顺序分配 id，
+ * 与 {@link RecordResolver} 逐条分配的结果相同。
+ */
+final class StagingWriter {
+
+    private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+
+    private final CopyManager copyManager;
+    /** 不为 null 时每张暂存表由各自的写入线程 COPY */
+    private final CopyLanes lanes;
+    private final LoaderMetrics metrics;
+    /** 不为 null 时每张暂存表的缓冲区达到目标大小就单独写出，暂存表之间没有外键 */
+    private final AdaptiveFlush policy;
+    private final PgBinaryCopyBuffer[] buffers = new PgBinaryCopyBuffer[StagingSchema.Table.values().length];
+
+    StagingWriter(Connection con, CopyLanes lanes, LoaderMetrics metrics, AdaptiveFlush policy) throws SQLException {
+        this.copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+        this.lanes = lanes;
+        this.metrics = metrics;
+        this.policy = policy;
+        for (StagingSchema.Table table : StagingSchema.Table.values()) {
+            buffers[table.ordinal()] = new PgBinaryCopyBuffer(INITIAL_BUFFER_SIZE);
+        }
+    }
+
+    private PgBinaryCopyBuffer row(StagingSchema.Table table) throws SQLException {
+        int i = table.ordinal();
+        if (policy != null && buffers[i].size() >= policy.target(i)) {
+            flush(table);
+        }
+        PgBinaryCopyBuffer buffer = buffers[i];
+        buffer.startRow(table.columnCount());
+        return buffer;
+    }
+
+    /**
+     * @param seq 记录在输入中的序号，从 0 开始
+     */
+    void write(ArticleRecord r, int seq) throws SQLException {
+        int id = r.id;
+        PgBinaryCopyBuffer b = row(StagingSchema.Table.ARTICLE);
+        b.writeInt(seq);
+        b.writeInt(id);
+        b.writeText(r.title);
+        b.writeText(r.pubModel);
+        b.writeDate(r.created);
+        b.writeDate(r.completed);
+
+        for (int i = 0; i < r.authors.size(); i++) {
+            ArticleRecord.Author author = r.authors.get(i);
+            b = row(StagingSchema.Table.AUTHOR);
+            b.writeInt(seq);
+            b.writeInt(i);
+            b.writeInt(id);
+            b.writeText(author.foreName);
+            b.writeText(author.lastName);
+            b.writeText(author.initials);
+            b.writeBoolean(author.collective);
+            b.writeText(author.affiliation);
+        }
+
+        for (int i = 0; i < r.keywords.size(); i++) {
+            b = row(StagingSchema.Table.KEYWORD);
+            b.writeInt(seq);
+            b.writeInt(i);
+            b.writeInt(id);
+            b.writeText(r.keywords.get(i));
+        }
+
+        b = row(StagingSchema.Table.JOURNAL);
+        b.writeInt(seq);
+        b.writeInt(id);
+        b.writeText(r.journalId);
+        b.writeText(r.journalCountry);
+        b.writeText(r.journalIssn);
+        b.writeText(r.journalTitle);
+        b.writeText(r.journalVolume);
+        b.writeText(r.journalIssue);
+
+        for (int i = 0; i < r.publicationTypes.size(); i++) {
+            ArticleRecord.PublicationType p = r.publicationTypes.get(i);
+            b = row(StagingSchema.Table.PUBLICATION_TYPE);
+            b.writeInt(seq);
+            b.writeInt(i);
+            b.writeInt(id);
+            b.writeText(p.id);
+            b.writeText(p.name);
+        }
+
+        for (int i = 0; i < r.articleIds.size(); i++) {
+            ArticleRecord.ArticleId ai = r.articleIds.get(i);
+            b = row(StagingSchema.Table.ARTICLE_ID);
+            b.writeInt(seq);
+            b.writeInt(i);
+            b.writeInt(id);
+            b.writeText(ai.type);
+            b.writeText(ai.identifier);
+        }
+
+        int year = r.created != null ? r.created.getYear() : 0;
+        for (int i = 0; i < r.referenceCount; i++) {
+            b = row(StagingSchema.Table.REFERENCE);
+            b.writeInt(id);
+            b.writeInt(r.references[i]);
+            b.writeInt(year);
+        }
+
+        for (int i = 0; i < r.grants.size(); i++) {
+            ArticleRecord.Grant g = r.grants.get(i);
+            b = row(StagingSchema.Table.GRANT);
+            b.writeInt(seq);
+            b.writeInt(i);
+            b.writeInt(id);
+            b.writeText(g.grantId);
+            b.writeText(g.acronym);
+            b.writeText(g.agency);
+            b.writeText(g.country);
+        }
+    }
+
+    void flush() throws SQLException {
+        for (StagingSchema.Table table : StagingSchema.Table.values()) {
+            flush(table);
+        }
+    }
+
+    private void flush(StagingSchema.Table table) throws SQLException {
+        int i = table.ordinal();
+        if (lanes != null) {
+            buffers[i] = lanes.submit(i, buffers[i], table.copySql());
+        } else {
+            long bytes = buffers[i].size();
+            long nanos = metrics.copyIn(table.tableName(), buffers[i], copyManager, table.copySql());
+            if (policy != null) {
+                policy.flushed(i, bytes, nanos);
+            }
+        }
+    }
+
+    /**
+     * 每张暂存表一条写入线程时的线程名。
+     */
+    static String[] laneNames() {
+        String[] names = new String[StagingSchema.Table.values().length];
+        for (StagingSchema.Table table : StagingSchema.Table.values()) {
+            names[table.ordinal()] = table.tableName();
+        }
+        return names;
+    }
+
+    void close() {
+        for (PgBinaryCopyBuffer buffer : buffers) {
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package io.pubmed.service.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 从解压流中读取 NDJSON：解压线程把解压后的数据切成按换行对齐的堆内分段放入有界队列，
+ * 读取线程通过 {@link #next()} 取出，因此解压与解析、写入并行进行，不需要先把文件解压到磁盘。
+ * <p>
+ * 分段缓冲区在解析完成后通过 {@link #release} 交还复用。
+ */
+final class StreamNdjsonReader implements NdjsonSource {
+
+    /** 输入流结束的标记 */
+    private static final NdjsonChunk END = new NdjsonChunk(ByteBuffer.allocate(0), -1, -1);
+
+    @FunctionalInterface
+    interface Decompressor {
+        InputStream wrap(InputStream raw) throws IOException;
+    }
+
+    private final CountingInputStream raw;
+    private final InputStream in;
+    private final long size;
+    private final int chunkSize;
+    private final long startOffset;
+
+    private final BlockingQueue<NdjsonChunk> chunks = new ArrayBlockingQueue<>(4);
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final Thread decompressor;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    private StreamNdjsonReader(CountingInputStream raw, InputStream in, long size, int chunkSize, long startOffset,
+                               String name) {
+        this.raw = raw;
+        this.in = in;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.startOffset = startOffset;
+        this.decompressor = new Thread(this::decompressLoop, "loader-decompress-" + name);
+        this.decompressor.setDaemon(true);
+        this.decompressor.start();
+    }
+
+    static StreamNdjsonReader open(Path file, int chunkSize, long startOffset, Decompressor decompressor)
+            throws IOException {
+        CountingInputStream raw = new CountingInputStream(Files.newInputStream(file));
+        try {
+            return new StreamNdjsonReader(raw, decompressor.wrap(raw), Files.size(file), chunkSize, startOffset,
+                    file.getFileName().toString());
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public NdjsonChunk next() throws IOException {
+        NdjsonChunk chunk;
+        try {
+            chunk = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for decompressed input", e);
+        }
+        if (chunk == END) {
+            if (failure != null) {
+                throw failure;
+            }
+            // 让之后的调用同样返回 null
+            chunks.offer(END);
+            return null;
+        }
+        return chunk;
+    }
+
+    @Override
+    public void release(NdjsonChunk chunk) {
+        if (chunk.data.hasArray() && chunk.data.array().length == chunkSize) {
+            free.offer(chunk.data.array());
+        }
+    }
+
+    @Override
+    public int queuedChunks() {
+        return chunks.size();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long bytesRead() {
+        return raw.count;
+    }
+
+    private void decompressLoop() {
+        try {
+            skip(startOffset);
+            long offset = startOffset;
+            byte[] buf = acquire();
+            int filled = 0;
+            while (!closed) {
+                if (filled == buf.length) {
+                    // 一行比分段还长，扩大缓冲区
+                    buf = Arrays.copyOf(buf, buf.length << 1);
+                }
+                int n = in.read(buf, filled, buf.length - filled);
+                if (n < 0) {
+                    if (filled > 0) {
+                        chunks.put(new NdjsonChunk(ByteBuffer.wrap(buf, 0, filled), offset, offset + filled));
+                    }
+                    break;
+                }
+                filled += n;
+                int end = lastNewline(buf, filled);
+                if (end < 0 || filled < buf.length && end < chunkSize / 2) {
+                    // 尽量凑满分段再交给解析线程
+                    continue;
+                }
+                byte[] next = acquire();
+                int rest = filled - end;
+                if (rest > next.length) {
+                    next = new byte[buf.length];
+                }
+                System.arraycopy(buf, end, next, 0, rest);
+                chunks.put(new NdjsonChunk(ByteBuffer.wrap(buf, 0, end), offset, offset + end));
+                offset += end;
+                buf = next;
+                filled = rest;
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Failed to decompress input: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                // 队列满时要等读取线程取走分段，不能丢掉结束标记；被 close 中断时直接返回
+                chunks.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 续传时跳过已导入的部分，压缩流只能解压后丢弃。
+     */
+    private void skip(long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long n = in.skip(remaining);
+            if (n <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Input ends before resume offset " + bytes);
+                }
+                n = 1;
+            }
+            remaining -= n;
+        }
+    }
+
+    private byte[] acquire() {
+        byte[] buf = free.poll();
+        return buf != null ? buf : new byte[chunkSize];
+    }
+
+    private static int lastNewline(byte[] buf, int filled) {
+        for (int i = filled - 1; i >= 0; i--) {
+            if (buf[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        decompressor.interrupt();
+        chunks.clear();
+        in.close();
+    }
+
+    /**
+     * 统计从磁盘读取的压缩字节数。
+     */
+    static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package io.pubmed.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按规模因子生成合成的 PubMed NDJSON，格式与 {@link ArticleRecordParser} 解析的字段完全一致，用于离线测量导入和查询的扩展性。
+ * <p>
+ * 规模因子 1 约为一个 pubmed24n 基线文件（{@link #BASE_ARTICLES} 篇文章）。作者、期刊和基金机构的数量与文章数成正比，
+ * 关键词表按 Heaps 定律随规模的平方根增长；关键词、作者、期刊和机构按 Zipf 分布取用，引用偏向更早、更“热门”的文章。
+ * 相同的参数和种子总是生成相同的文件。
+ * <p>
+ * 用法：SyntheticNdjsonGenerator [--scale=F] [--articles=N] [--seed=N] [--years=FROM-TO] [--authors-mean=F]
+ * [--citations-mean=F] [--citation-skew=F] [--keywords-mean=F] [--keyword-zipf=F] [--keyword-vocabulary=N]
+ * [--grants-mean=F] [--collective-ratio=F] 输出文件，文件名以 .gz 结尾时写出 gzip。
+ */
+public final class SyntheticNdjsonGenerator {
+
+    /** 规模因子为 1 时的文章数 */
+    static final int BASE_ARTICLES = 30_000;
+
+    private static final String[] WORDS = {
+            "analysis", "cell", "clinical", "protein", "expression", "patients", "study", "effect", "human", "gene",
+            "cancer", "treatment", "response", "activity", "receptor", "model", "role", "tissue", "acute", "chronic",
+            "therapy", "risk", "factor", "brain", "blood", "infection", "virus", "mouse", "signaling", "pathway",
+            "children", "outcome", "trial", "randomized", "cohort", "imaging", "surgery", "plasma", "immune", "disease",
+            "syndrome", "mutation", "genome", "metabolism", "inflammation", "structure", "binding", "kinase", "dose",
+            "évaluation", "régulation", "über", "基因", "临床",
+    };
+    private static final String[] SURNAMES = {
+            "Wang", "Li", "Zhang", "Liu", "Chen", "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+            "Davis", "Müller", "Schmidt", "Schneider", "Kim", "Lee", "Park", "Nguyen", "Tanaka", "Suzuki", "Sato",
+            "Rossi", "Russo", "Ferrari", "Martin", "Bernard", "Dubois", "Silva", "Santos", "Kowalski", "Novak",
+            "Ivanov", "Petrov", "Andersson", "Johansson", "Jensen", "Hansen", "O'Brien", "Murphy", "Kelly",
+    };
+    private static final String[] FORE_NAMES = {
+            "Wei", "Jing", "Min", "Xiao", "John", "Mary", "James", "Patricia", "Robert", "Jennifer", "Michael", "Linda",
+            "Hans", "Anna", "Thomas", "Maria", "José", "Hiroshi", "Yuki", "Ji-Hoon", "Olga", "Lars", "Sean", "Chloé",
+    };
+    private static final String[] COUNTRIES = {
+            "United States", "China", "United Kingdom", "Germany", "Japan", "France", "Italy", "Canada", "Australia",
+            "Netherlands", "Spain", "Korea (South)", "Switzerland", "Sweden", "Brazil", "India",
+    };
+    private static final String[] PUB_MODELS = {
+            "Print", "Print-Electronic", "Electronic", "Electronic-Print", "Electronic-eCollection",
+    };
+    /** 出版类型 (id, name)，第一项是绝大多数文章都有的 Journal Article */
+    private static final String[][] PUBLICATION_TYPES = {
+            {"D016428", "Journal Article"}, {"D013485", "Research Support, Non-U.S. Gov't"},
+            {"D016454", "Review"}, {"D016449", "Randomized Controlled Trial"}, {"D002363", "Case Reports"},
+            {"D016422", "Letter"}, {"D016421", "Editorial"}, {"D017065", "Practice Guideline"},
+            {"D016448", "Multicenter Study"}, {"D017418", "Meta-Analysis"},
+            {"D013486", "Research Support, U.S. Gov't, P.H.S."},
+    };
+
+    /**
+     * 生成参数，默认值大致符合 PubMed 的形状。
+     */
+    static final class Options {
+        String fileName;
+        double scale = 1;
+        /** 大于 0 时直接指定文章数，忽略 scale */
+        int articles = 0;
+        long seed = 42;
+        int fromYear = 1990;
+        int toYear = 2024;
+        /** 每篇文章平均作者数，按 1 + Poisson 分布 */
+        double authorsMean = 5;
+        /** 每篇文章平均引用数，按几何分布（多数文章引用很少，少数引用很多） */
+        double citationsMean = 12;
+        /** 引用目标偏向早期文章的程度，1 为在之前的文章中均匀选取 */
+        double citationSkew = 2;
+        /** 每篇文章平均关键词数，按 Poisson 分布 */
+        double keywordsMean = 4;
+        /** 关键词流行度的 Zipf 指数 */
+        double keywordZipf = 1.1;
+        /** 大于 0 时直接指定关键词表大小 */
+        int keywordVocabulary = 0;
+        /** 每篇文章平均基金数，按 Poisson 分布 */
+        double grantsMean = 0.6;
+        /** 团体作者所占比例 */
+        double collectiveRatio = 0.01;
+
+        int articleCount() {
+            return articles > 0 ? articles : (int) Math.max(1, Math.round(BASE_ARTICLES * scale));
+        }
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                if (arg.startsWith("--scale=")) {
+                    o.scale = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--articles=")) {
+                    o.articles = Integer.parseInt(value(arg));
+                } else if (arg.startsWith("--seed=")) {
+                    o.seed = Long.parseLong(value(arg));
+                } else if (arg.startsWith("--years=")) {
+                    String[] range = value(arg).split("-");
+                    o.fromYear = Integer.parseInt(range[0]);
+                    o.toYear = Integer.parseInt(range[range.length - 1]);
+                } else if (arg.startsWith("--authors-mean=")) {
+                    o.authorsMean = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--citations-mean=")) {
+                    o.citationsMean = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--citation-skew=")) {
+                    o.citationSkew = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--keywords-mean=")) {
+                    o.keywordsMean = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--keyword-zipf=")) {
+                    o.keywordZipf = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--keyword-vocabulary=")) {
+                    o.keywordVocabulary = Integer.parseInt(value(arg));
+                } else if (arg.startsWith("--grants-mean=")) {
+                    o.grantsMean = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--collective-ratio=")) {
+                    o.collectiveRatio = Double.parseDouble(value(arg));
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    o.fileName = arg;
+                }
+            }
+            if (o.fileName == null) {
+                throw new IllegalArgumentException("Output file is required");
+            }
+            if (o.fromYear > o.toYear || o.authorsMean < 1 || o.citationSkew <= 0) {
+                throw new IllegalArgumentException("Invalid --years, --authors-mean or --citation-skew");
+            }
+            return o;
+        }
+
+        private static String value(String arg) {
+            return arg.substring(arg.indexOf('=') + 1);
+        }
+    }
+
+    private final Options options;
+    private final SplittableRandom random;
+    private final int articles;
+    private final int authorPool;
+    private final int journalPool;
+    private final int agencyPool;
+    private final int vocabulary;
+    private final StringBuilder line = new StringBuilder(4096);
+    /** 当前文章已引用的文章，article_references 的主键不允许重复 */
+    private int[] references = new int[64];
+
+    SyntheticNdjsonGenerator(Options options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed);
+        this.articles = options.articleCount();
+        this.authorPool = Math.max(10, (int) (articles * 1.5));
+        this.journalPool = Math.max(5, articles / 20);
+        this.agencyPool = Math.max(5, (int) (300 * Math.sqrt(articles / (double) BASE_ARTICLES)));
+        this.vocabulary = options.keywordVocabulary > 0 ? options.keywordVocabulary
+                : Math.max(10, (int) (20_000 * Math.sqrt(articles / (double) BASE_ARTICLES)));
+    }
+
+    /**
+     * 依次写出所有文章，每行一篇。
+     */
+    void write(OutputStream out) throws IOException {
+        for (int i = 0; i < articles; i++) {
+            line.setLength(0);
+            article(i);
+            line.append('\n');
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void article(int index) {
+        int id = index + 1;
+        // 文章按 id 的顺序大致按时间排列，引用总是指向更早的文章
+        int span = options.toYear - options.fromYear + 1;
+        int year = options.fromYear + (int) ((long) index * span / articles);
+        LocalDate created = LocalDate.of(year, 1 + random.nextInt(12), 1 + random.nextInt(28));
+        LocalDate completed = created.plusDays(random.nextInt(365));
+
+        line.append("{\"id\": \"").append(id).append('"');
+        line.append(", \"title\": ");
+        string(words(6 + random.nextInt(10), true));
+        line.append(", \"pub_model\": ");
+        string(PUB_MODELS[random.nextInt(PUB_MODELS.length)]);
+        line.append(", \"date_created\": ");
+        date(created);
+        line.append(", \"date_completed\": ");
+        date(completed);
+
+        line.append(", \"author\": [");
+        int authorCount = 1 + poisson(options.authorsMean - 1);
+        for (int i = 0; i < authorCount; i++) {
+            line.append(i == 0 ? "" : ", ");
+            author();
+        }
+        line.append(']');
+
+        line.append(", \"keywords\": [");
+        int keywordCount = poisson(options.keywordsMean);
+        for (int i = 0; i < keywordCount; i++) {
+            line.append(i == 0 ? "" : ", ");
+            string(keyword(zipf(vocabulary, options.keywordZipf)));
+        }
+        line.append(']');
+
+        journal(zipf(journalPool, 1.0));
+
+        line.append(", \"publication_types\": [");
+        publicationType(PUBLICATION_TYPES[0]);
+        int extraTypes = random.nextInt(10) < 3 ? 1 + random.nextInt(2) : 0;
+        for (int i = 0; i < extraTypes; i++) {
+            line.append(", ");
+            publicationType(PUBLICATION_TYPES[1 + random.nextInt(PUBLICATION_TYPES.length - 1)]);
+        }
+        line.append(']');
+
+        line.append(", \"article_ids\": [{\"ty\": \"pubmed\", \"id\": \"").append(id).append("\"}");
+        if (random.nextInt(10) < 7) {
+            line.append(", {\"ty\": \"doi\", \"id\": \"10.").append(1000 + random.nextInt(9000)).append('/')
+                    .append(Long.toString(random.nextLong(1L << 40), 36)).append("\"}");
+        }
+        if (random.nextInt(10) < 3) {
+            line.append(", {\"ty\": \"pmc\", \"id\": \"PMC").append(1_000_000 + id).append("\"}");
+        }
+        line.append(']');
+
+        line.append(", \"references\": [");
+        int attempts = index == 0 ? 0 : Math.min(index, geometric(options.citationsMean));
+        int referenceCount = 0;
+        for (int i = 0; i < attempts; i++) {
+            // u^skew 越偏向 0，越集中在最早（被引用最多）的文章上；重复抽中的不再写出
+            int target = 1 + (int) (index * Math.pow(random.nextDouble(), options.citationSkew));
+            if (!cited(target, referenceCount)) {
+                if (referenceCount == references.length) {
+                    references = Arrays.copyOf(references, referenceCount * 2);
+                }
+                references[referenceCount] = target;
+                line.append(referenceCount++ == 0 ? "" : ", ").append(target);
+            }
+        }
+        line.append(']');
+
+        line.append(", \"grant\": [");
+        int grantCount = poisson(options.grantsMean);
+        for (int i = 0; i < grantCount; i++) {
+            line.append(i == 0 ? "" : ", ");
+            grant(zipf(agencyPool, 1.0));
+        }
+        line.append("]}");
+    }
+
+    private boolean cited(int target, int count) {
+        for (int i = 0; i < count; i++) {
+            if (references[i] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 作者由编号决定姓名，同一编号在不同文章中是同一作者；单位每次出现时随机。
+     */
+    private void author() {
+        if (random.nextDouble() < options.collectiveRatio) {
+            line.append("{\"collective_name\": ");
+            string(capitalize(words(2 + random.nextInt(3), false)) + " Study Group "
+                    + zipf(Math.max(1, authorPool / 100), 1.0));
+            line.append('}');
+            return;
+        }
+        int a = zipf(authorPool, 0.8);
+        String surname = SURNAMES[a % SURNAMES.length];
+        String foreName = FORE_NAMES[(a / SURNAMES.length) % FORE_NAMES.length];
+        int suffix = a / (SURNAMES.length * FORE_NAMES.length);
+        line.append("{\"last_name\": ");
+        string(suffix == 0 ? surname : surname + "-" + Integer.toString(suffix, 36));
+        line.append(", \"fore_name\": ");
+        string(foreName);
+        line.append(", \"initials\": ");
+        string(foreName.substring(0, 1));
+        line.append(", \"affiliation\": ");
+        string("Department of " + capitalize(WORDS[random.nextInt(WORDS.length)]) + ", University "
+                + random.nextInt(500) + ", " + COUNTRIES[random.nextInt(COUNTRIES.length)] + ".");
+        line.append('}');
+    }
+
+    private void journal(int j) {
+        line.append(", \"journal\": {\"id\": \"").append(String.format("%07d", j)).append('"');
+        line.append(", \"country\": ");
+        string(COUNTRIES[j % COUNTRIES.length]);
+        line.append(", \"issn\": \"").append(String.format("%04d-%04d", j % 10_000, (j * 7919) % 10_000)).append('"');
+        line.append(", \"title\": ");
+        string("Journal of " + capitalize(WORDS[j % WORDS.length]) + " "
+                + capitalize(WORDS[(j / WORDS.length) % WORDS.length])
+                + (j >= WORDS.length * WORDS.length ? " " + j : ""));
+        line.append(", \"journal_issue\": {\"volume\": \"").append(1 + random.nextInt(200))
+                .append("\", \"issue\": \"").append(1 + random.nextInt(12)).append("\"}}");
+    }
+
+    private void publicationType(String[] type) {
+        line.append("{\"id\": \"").append(type[0]).append("\", \"name\": ");
+        string(type[1]);
+        line.append('}');
+    }
+
+    private void grant(int agency) {
+        line.append("{\"id\": \"").append(random.nextBoolean() ? "R01" : "P30").append(' ')
+                .append(Integer.toString(random.nextInt(1 << 20), 36).toUpperCase()).append('"');
+        line.append(", \"acronym\": \"AG").append(agency).append('"');
+        line.append(", \"agency\": ");
+        string("Agency " + agency + " for " + capitalize(WORDS[agency % WORDS.length]) + " Research");
+        line.append(", \"country\": ");
+        string(COUNTRIES[agency % COUNTRIES.length]);
+        line.append('}');
+    }
+
+    private void date(LocalDate date) {
+        line.append("{\"year\": ").append(date.getYear()).append(", \"month\": ").append(date.getMonthValue())
+                .append(", \"day\": ").append(date.getDayOfMonth()).append('}');
+    }
+
+    /**
+     * 关键词由排名决定，排名越靠前越常用。
+     */
+    private static String keyword(int rank) {
+        String word = WORDS[rank % WORDS.length];
+        int group = rank / WORDS.length;
+        if (group == 0) {
+            return word;
+        }
+        return word + " " + WORDS[group % WORDS.length] + (group >= WORDS.length ? " " + group : "");
+    }
+
+    private String words(int n, boolean sentence) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "" : " ").append(WORDS[zipf(WORDS.length, 0.7)]);
+        }
+        return sentence ? capitalize(sb.toString()) + "." : sb.toString();
+    }
+
+    private static String capitalize(String s) {
+        return s.isEmpty() ? s : Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    /**
+     * 写出 JSON 字符串，转义引号、反斜杠和控制字符。
+     */
+    private void string(String s) {
+        line.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * 在 [0, n) 中按 Zipf 分布取排名，用连续幂律的反函数近似，不需要预先计算累积分布表。
+     */
+    private int zipf(int n, double s) {
+        double u = random.nextDouble();
+        double x;
+        if (Math.abs(s - 1) < 1e-9) {
+            x = Math.pow(n + 1, u);
+        } else {
+            double t = Math.pow(n + 1, 1 - s);
+            x = Math.pow((t - 1) * u + 1, 1 / (1 - s));
+        }
+        return Math.min(n - 1, (int) x - 1);
+    }
+
+    private int poisson(double mean) {
+        if (mean <= 0) {
+            return 0;
+        }
+        // 均值较大时用正态近似，避免 Knuth 方法的乘积下溢
+        if (mean > 30) {
+            double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble()))
+                    * Math.cos(2 * Math.PI * random.nextDouble());
+            return Math.max(0, (int) Math.round(mean + Math.sqrt(mean) * gaussian));
+        }
+        double limit = Math.exp(-mean);
+        double p = random.nextDouble();
+        int k = 0;
+        while (p > limit) {
+            p *= random.nextDouble();
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * 均值为 mean 的几何分布（从 0 开始）。
+     */
+    private int geometric(double mean) {
+        if (mean <= 0) {
+            return 0;
+        }
+        double p = 1 / (mean + 1);
+        return (int) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+    }
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Path file = Paths.get(options.fileName);
+        long start = System.currentTimeMillis();
+        SyntheticNdjsonGenerator generator = new SyntheticNdjsonGenerator(options);
+        try (OutputStream out = open(file)) {
+            generator.write(out);
+        } catch (IOException e) {
+            System.err.println("Failed to write " + file + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println(generator.articles + " articles written to " + file + " in "
+                + (System.currentTimeMillis() - start) * 1.0 / 1000 + "s");
+    }
+
+    private static OutputStream open(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            return new BufferedOutputStream(new GZIPOutputStream(out, 1 << 16), 1 << 16);
+        }
+        return new BufferedOutputStream(out, 1 << 16);
+    }
+}
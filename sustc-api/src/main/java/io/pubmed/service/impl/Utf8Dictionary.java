@@ -0,0 +1,270 @@
+package io.pubmed.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * GoodLoader 去重用的字典，键是一个或三个字符串字段，值是 int。
+ * <p>
+ * 键按 UTF-8 编码后连续存放在一个字节数组中，每个字段前写入长度（null 与空串不同），
+ * 因此不需要拼接字符串，不同的字段组合也不会得到相同的键。哈希表为开放寻址，
+ * 槽位和条目的哈希、键位置、值都存放在 int 数组中；查找时把字段编码到复用的缓冲区，不分配对象。
+ * <p>
+ * 查找未命中后可以直接用 {@link #putMissing} 加入刚才查找的键，不需要再次编码。非线程安全。
+ */
+final class Utf8Dictionary {
+
+    static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /** 条目下标 + 1，0 表示空槽 */
+    private int[] slots;
+    private int mask;
+
+    private int[] hashes;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] values;
+    private int size;
+
+    private byte[] arena;
+    private int arenaSize;
+
+    /** 最近一次查找的键 */
+    private byte[] key = new byte[256];
+    private int keyLength;
+    private int keyHash;
+    /** 最近一次查找未命中时，新条目应放入的槽位 */
+    private int pendingSlot = -1;
+
+    Utf8Dictionary() {
+        this(1024);
+    }
+
+    Utf8Dictionary(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        slots = new int[capacity];
+        mask = capacity - 1;
+        hashes = new int[expectedSize];
+        offsets = new int[expectedSize];
+        lengths = new int[expectedSize];
+        values = new int[expectedSize];
+        arena = new byte[Math.max(1 << 12, expectedSize * 16)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return 各数组占用的堆内存（字节），不含对象头，供 {@link LoaderMetrics} 估计字典大小
+     */
+    long memoryBytes() {
+        return 4L * (slots.length + hashes.length + offsets.length + lengths.length + values.length)
+                + arena.length + key.length;
+    }
+
+    /**
+     * @return 键对应的值，不存在时返回 {@link #MISSING}
+     */
+    int get(String k) {
+        keyLength = 0;
+        append(k);
+        return lookup();
+    }
+
+    int get(String k1, String k2, String k3) {
+        keyLength = 0;
+        append(k1);
+        append(k2);
+        append(k3);
+        return lookup();
+    }
+
+    /**
+     * 以 value 加入最近一次 {@link #get} 未找到的键。
+     */
+    void putMissing(int value) {
+        if (pendingSlot < 0) {
+            throw new IllegalStateException("putMissing must follow a get that returned MISSING");
+        }
+        int slot = pendingSlot;
+        pendingSlot = -1;
+        if (size == hashes.length) {
+            int capacity = size + (size >> 1) + 16;
+            hashes = Arrays.copyOf(hashes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        if (arena.length - arenaSize < keyLength) {
+            long capacity = Math.max((long) arenaSize + keyLength, arena.length + (long) (arena.length >> 1));
+            if (capacity > Integer.MAX_VALUE - 8) {
+                capacity = Integer.MAX_VALUE - 8;
+                if (capacity < (long) arenaSize + keyLength) {
+                    throw new IllegalStateException("Dictionary keys exceed 2GB");
+                }
+            }
+            arena = Arrays.copyOf(arena, (int) capacity);
+        }
+        System.arraycopy(key, 0, arena, arenaSize, keyLength);
+        hashes[size] = keyHash;
+        offsets[size] = arenaSize;
+        lengths[size] = keyLength;
+        values[size] = value;
+        arenaSize += keyLength;
+        size++;
+        slots[slot] = size;
+        if (size > slots.length * LOAD_FACTOR) {
+            rehash(slots.length << 1);
+        }
+    }
+
+    /**
+     * 最近一次查找的键的编码，有效长度为 {@link #lastKeyLength()}，用于写入断点日志。
+     */
+    byte[] lastKey() {
+        return key;
+    }
+
+    int lastKeyLength() {
+        return keyLength;
+    }
+
+    /**
+     * 加入或覆盖一个已编码的键（来自 {@link #lastKey()}），用于从断点日志恢复字典。
+     */
+    void putEncoded(byte[] bytes, int offset, int length, int value) {
+        ensureKeyCapacity(length);
+        System.arraycopy(bytes, offset, key, 0, length);
+        keyLength = length;
+        int found = lookup();
+        if (found == MISSING) {
+            putMissing(value);
+        } else {
+            // 键已存在时查找不会记录槽位，这里重新找到条目并覆盖
+            int i = keyHash & mask;
+            while (true) {
+                int e = slots[i] - 1;
+                if (hashes[e] == keyHash && matches(e)) {
+                    values[e] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
+    private int lookup() {
+        int h = hash(key, keyLength);
+        keyHash = h;
+        int i = h & mask;
+        while (true) {
+            int e = slots[i];
+            if (e == 0) {
+                pendingSlot = i;
+                return MISSING;
+            }
+            e--;
+            if (hashes[e] == h && matches(e)) {
+                pendingSlot = -1;
+                return values[e];
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private boolean matches(int entry) {
+        int offset = offsets[entry];
+        return lengths[entry] == keyLength
+                && Arrays.equals(arena, offset, offset + keyLength, key, 0, keyLength);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int e = 0; e < size; e++) {
+            int i = hashes[e] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = e + 1;
+        }
+    }
+
+    /**
+     * 追加一个字段：varint(UTF-8 字节数 + 1)，null 写 0；随后是 UTF-8 字节。
+     */
+    private void append(String s) {
+        if (s == null) {
+            ensureKeyCapacity(keyLength + 1);
+            key[keyLength++] = 0;
+            return;
+        }
+        int chars = s.length();
+        int utf8 = 0;
+        for (int i = 0; i < chars; i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                utf8++;
+            } else if (ch < 0x800) {
+                utf8 += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < chars && Character.isLowSurrogate(s.charAt(i + 1))) {
+                utf8 += 4;
+                i++;
+            } else {
+                utf8 += 3;
+            }
+        }
+        ensureKeyCapacity(keyLength + 5 + utf8);
+        for (int v = utf8 + 1; ; v >>>= 7) {
+            if ((v & ~0x7f) == 0) {
+                key[keyLength++] = (byte) v;
+                break;
+            }
+            key[keyLength++] = (byte) ((v & 0x7f) | 0x80);
+        }
+        byte[] k = key;
+        int p = keyLength;
+        for (int i = 0; i < chars; i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                k[p++] = (byte) ch;
+            } else if (ch < 0x800) {
+                k[p++] = (byte) (0xc0 | ch >> 6);
+                k[p++] = (byte) (0x80 | ch & 0x3f);
+            } else if (Character.isHighSurrogate(ch) && i + 1 < chars && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, s.charAt(++i));
+                k[p++] = (byte) (0xf0 | cp >> 18);
+                k[p++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                k[p++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                k[p++] = (byte) (0x80 | cp & 0x3f);
+            } else {
+                // 不成对的代理字符直接按 3 字节编码其码元，只用于哈希与比较，不需要是合法的 UTF-8
+                k[p++] = (byte) (0xe0 | ch >> 12);
+                k[p++] = (byte) (0x80 | ch >> 6 & 0x3f);
+                k[p++] = (byte) (0x80 | ch & 0x3f);
+            }
+        }
+        keyLength = p;
+    }
+
+    private void ensureKeyCapacity(int capacity) {
+        if (key.length < capacity) {
+            key = Arrays.copyOf(key, Math.max(capacity, key.length << 1));
+        }
+    }
+
+    /**
+     * 64 位 FNV-1a，再乘黄金分割常数把高位混合到低位，用于开放寻址的槽位。
+     */
+    private static int hash(byte[] bytes, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            h ^= bytes[i] & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h *= 0x9e3779b97f4a7c15L;
+        return (int) (h >>> 32);
+    }
+}
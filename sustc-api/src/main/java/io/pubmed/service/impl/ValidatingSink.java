@@ -0,0 +1,124 @@
+package io.pubmed.service.impl;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.regex.Pattern;
+
+/**
+ * 在 Java 中执行与 {@link LoaderSchema#TRIGGERS_AND_VIEWS} 中触发器相同的校验，再把行交给下层写入后端。
+ * <p>
+ * 用于导入后再建约束的模式：导入期间表上没有触发器，由这里保证写入的数据同样满足触发器规则，
+ * 违反时抛出与触发器相同信息的异常并终止导入。
+ */
+final class ValidatingSink implements LoaderSink {
+
+    private static final Pattern ISSN = Pattern.compile("^[A-Za-z0-9]{4}-[A-Za-z0-9]{4}$");
+
+    private final LoaderSink delegate;
+
+    ValidatingSink(LoaderSink delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void article(int id, String title, String pubModel, LocalDate created, LocalDate completed)
+            throws SQLException {
+        // trg_check_date_completed
+        if (completed != null && created != null && completed.isBefore(created)) {
+            throw new SQLException("date_completed cannot be earlier than date_created (article " + id + ")");
+        }
+        delegate.article(id, title, pubModel, created, completed);
+    }
+
+    @Override
+    public void author(int id, String foreName, String lastName, String initials, boolean collective,
+                       String affiliation) throws SQLException {
+        // trg_check_authors_consistency
+        if (collective) {
+            if (lastName == null || lastName.isEmpty()) {
+                throw new SQLException("Collective name must be provided when is_collective is TRUE");
+            }
+            if (notEmpty(foreName) || notEmpty(initials)) {
+                throw new SQLException("Fore_name, last_name, and initials must be empty when is_collective is TRUE");
+            }
+        } else if ("".equals(lastName)) {
+            throw new SQLException("Last name must be provided when is_collective is FALSE");
+        }
+        delegate.author(id, foreName, lastName, initials, collective, affiliation);
+    }
+
+    @Override
+    public void journal(String id, String country, String issn, String title, String volume, String issue)
+            throws SQLException {
+        // trg_check_issn_format：NULL 与任何值比较均不成立，触发器同样会拒绝
+        if (issn == null || !(issn.isEmpty() || ISSN.matcher(issn).matches())) {
+            throw new SQLException("Invalid ISSN format in Journal (journal " + id + ")");
+        }
+        delegate.journal(id, country, issn, title, volume, issue);
+    }
+
+    /** SQL 中 NULL != '' 为 NULL，不会触发异常 */
+    private static boolean notEmpty(String s) {
+        return s != null && !s.isEmpty();
+    }
+
+    @Override
+    public void articleAuthor(int articleId, int authorId) throws SQLException {
+        delegate.articleAuthor(articleId, authorId);
+    }
+
+    @Override
+    public void articleJournal(int articleId, String journalId) throws SQLException {
+        delegate.articleJournal(articleId, journalId);
+    }
+
+    @Override
+    public void keyword(int id, String keyword) throws SQLException {
+        delegate.keyword(id, keyword);
+    }
+
+    @Override
+    public void articleKeyword(int articleId, int keywordId) throws SQLException {
+        delegate.articleKeyword(articleId, keywordId);
+    }
+
+    @Override
+    public void publicationType(String id, String name) throws SQLException {
+        delegate.publicationType(id, name);
+    }
+
+    @Override
+    public void articlePublicationType(int articleId, String pubTypeId) throws SQLException {
+        delegate.articlePublicationType(articleId, pubTypeId);
+    }
+
+    @Override
+    public void articleId(int id, int articleId, String type, String identifier) throws SQLException {
+        delegate.articleId(id, articleId, type, identifier);
+    }
+
+    @Override
+    public void grant(int id, String grantId, String acronym, String agency, String country) throws SQLException {
+        delegate.grant(id, grantId, acronym, agency, country);
+    }
+
+    @Override
+    public void articleGrant(int articleId, int grantId) throws SQLException {
+        delegate.articleGrant(articleId, grantId);
+    }
+
+    @Override
+    public void reference(int articleId, int referenceId, int citingYear) throws SQLException {
+        delegate.reference(articleId, referenceId, citingYear);
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        delegate.close();
+    }
+}
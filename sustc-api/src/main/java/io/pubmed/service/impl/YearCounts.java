@@ -0,0 +1,97 @@
+package io.pubmed.service.impl;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 导入时在内存中累计 (id, 年份) -> 次数，导入结束后一次性写入 {@link LoaderAggregates} 中的统计表。
+ * <p>
+ * 键为 id 与年份拼成的 long，开放寻址存放在 long/int 数组中，累计时不分配对象。
+ */
+final class YearCounts {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    /** 每次 COPY 的行数 */
+    private static final int COPY_ROWS = 1 << 20;
+
+    /** id << 32 | year，id 均为正数，0 表示空槽 */
+    private long[] keys = new long[1 << 16];
+    private int[] counts = new int[1 << 16];
+    private int mask = keys.length - 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return 两个数组占用的堆内存（字节）
+     */
+    long memoryBytes() {
+        return 8L * keys.length + 4L * counts.length;
+    }
+
+    void add(int id, int year) {
+        long k = (long) id << 32 | (year & 0xffffffffL);
+        int i = slot(k);
+        while (keys[i] != 0) {
+            if (keys[i] == k) {
+                counts[i]++;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = k;
+        counts[i] = 1;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash();
+        }
+    }
+
+    private int slot(long k) {
+        return (int) ((k * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length << 1];
+        counts = new int[keys.length];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j]);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    /**
+     * 以 binary COPY 写出所有 (id, year, count) 行，copySql 的列顺序须与之一致。
+     */
+    void copyIn(Connection con, String copySql) throws SQLException {
+        CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+        PgBinaryCopyBuffer buffer = new PgBinaryCopyBuffer(Math.min(size, COPY_ROWS) * 26);
+        for (int i = 0; i < keys.length; i++) {
+            long k = keys[i];
+            if (k == 0) {
+                continue;
+            }
+            buffer.startRow(3);
+            buffer.writeInt((int) (k >>> 32));
+            buffer.writeInt((int) k);
+            buffer.writeInt(counts[i]);
+            if (buffer.rows() == COPY_ROWS) {
+                buffer.copyIn(copyManager, copySql);
+            }
+        }
+        buffer.copyIn(copyManager, copySql);
+    }
+}
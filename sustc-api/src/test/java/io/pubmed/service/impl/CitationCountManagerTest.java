@@ -0,0 +1,113 @@
+package io.pubmed.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 不连接数据库，只检查通知与事务快照的解析，以及通知如何作用到已载入的索引上。
+ */
+class CitationCountManagerTest {
+
+    private static CitationIndex index(int articleId, int year, int count) {
+        CitationIndex.Builder builder = new CitationIndex.Builder();
+        builder.add(articleId, year, count);
+        return builder.build();
+    }
+
+    @Test
+    void xidSnapshotVisibility() {
+        CitationCountManager.XidSnapshot snapshot = CitationCountManager.XidSnapshot.parse("10:20:12,15");
+        assertTrue(snapshot.visible(5));
+        assertTrue(snapshot.visible(10));
+        assertFalse(snapshot.visible(12));
+        assertTrue(snapshot.visible(13));
+        assertFalse(snapshot.visible(15));
+        assertTrue(snapshot.visible(19));
+        assertFalse(snapshot.visible(20));
+        assertFalse(snapshot.visible(25));
+    }
+
+    @Test
+    void xidSnapshotWithoutRunningTransactions() {
+        CitationCountManager.XidSnapshot snapshot = CitationCountManager.XidSnapshot.parse("742:742:");
+        assertTrue(snapshot.visible(741));
+        assertFalse(snapshot.visible(742));
+    }
+
+    @Test
+    void parseChanges() {
+        CitationCountManager.Notification n = CitationCountManager.Notification.parse("1234 7 origin 5:2001:1,9:2010:-2");
+        assertEquals(1234, n.xid);
+        assertEquals("origin", n.origin);
+        assertArrayEquals(new int[]{5, 2001, 1, 9, 2010, -2}, n.changes);
+    }
+
+    @Test
+    void parseReload() {
+        CitationCountManager.Notification n = CitationCountManager.Notification.parse("1234 7 trigger reload");
+        assertEquals("trigger", n.origin);
+        assertNull(n.changes);
+    }
+
+    @Test
+    void parseRejectsMalformedPayloads() {
+        for (String payload : new String[]{"", "1234", "1234 7 origin", "x 7 origin 5:2001:1",
+                "1234 7 origin 5:2001", "1234 7 origin 5:2001:1:0", "1234 7 origin 5:2001:one"}) {
+            assertThrows(IllegalArgumentException.class, () -> CitationCountManager.Notification.parse(payload), payload);
+        }
+    }
+
+    @Test
+    void foreignChangesApplyToIndex() {
+        CitationCountManager manager = new CitationCountManager();
+        CitationIndex index = index(5, 2001, 3);
+        manager.useIndex(index);
+        manager.onNotification("1234 7 other 5:2001:2,6:2002:1");
+        assertEquals(5, index.count(5, 2001));
+        assertEquals(1, index.count(6, 2002));
+    }
+
+    /**
+     * 本实例修改计数时已经更新了索引，收到自己发出的通知不能再加一次。
+     */
+    @Test
+    void ownNotificationsAreSkipped() {
+        CitationCountManager manager = new CitationCountManager();
+        CitationIndex index = index(5, 2001, 3);
+        manager.useIndex(index);
+        manager.onNotification("1234 7 " + manager.instanceId + " 5:2001:2");
+        manager.onNotification("1235 8 " + manager.instanceId + " reload");
+        assertEquals(3, index.count(5, 2001));
+        manager.onNotification("1236 9 other 5:2001:1");
+        assertEquals(4, index.count(5, 2001));
+    }
+
+    /**
+     * 无法解析的通知不知道漏掉了哪些变化，当前索引作废，此后的变化不再加到旧索引上。
+     */
+    @Test
+    void unparseableNotificationDropsIndex() {
+        CitationCountManager manager = new CitationCountManager();
+        CitationIndex index = index(5, 2001, 3);
+        manager.useIndex(index);
+        manager.onNotification("1234 7 other 5:2001");
+        manager.onNotification("1235 8 other 5:2001:1");
+        assertEquals(3, index.count(5, 2001));
+    }
+
+    @Test
+    void reloadNotificationDropsIndex() {
+        CitationCountManager manager = new CitationCountManager();
+        CitationIndex index = index(5, 2001, 3);
+        manager.useIndex(index);
+        manager.onNotification("1234 7 trigger reload");
+        manager.onNotification("1235 8 other 5:2001:1");
+        assertEquals(3, index.count(5, 2001));
+    }
+}
@@ -0,0 +1,142 @@
+package io.pubmed.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CitationIndexTest {
+
+    private static final int MAX_COUNT = (1 << 24) - 1;
+
+    private static CitationIndex build(int[]... rows) {
+        CitationIndex.Builder builder = new CitationIndex.Builder();
+        for (int[] row : rows) {
+            builder.add(row[0], row[1], row[2]);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void lookup() {
+        CitationIndex index = build(new int[]{3, 2001, 4}, new int[]{3, 2005, 1}, new int[]{10, 1999, 7});
+        assertEquals(2, index.articles());
+        assertEquals(3, index.entries());
+        assertEquals(4, index.count(3, 2001));
+        assertEquals(1, index.count(3, 2005));
+        assertEquals(0, index.count(3, 2003));
+        assertEquals(5, index.count(3));
+        assertEquals(7, index.count(10, 1999));
+        assertEquals(0, index.count(4));
+        assertEquals(0, index.count(4, 2001));
+    }
+
+    @Test
+    void emptyIndex() {
+        CitationIndex index = build();
+        assertEquals(0, index.articles());
+        assertEquals(0, index.count(1));
+        assertEquals(0, index.count(1, 2000));
+        index.add(1, 2000, 2);
+        assertEquals(2, index.count(1, 2000));
+        assertEquals(2, index.count(1));
+    }
+
+    /**
+     * 顺序之外的行、压缩格式放不下的年份和计数记入 extra，查询时与数组中的计数相加。
+     */
+    @Test
+    void rowsOutsideTheArraysGoToExtra() {
+        CitationIndex index = build(
+                new int[]{5, 2000, 1},
+                new int[]{5, 1990, 2},                              // 年份倒序
+                new int[]{2, 2000, 3},                              // 文章倒序
+                new int[]{5, CitationIndex.BASE_YEAR - 1, 4},       // 年份过小
+                new int[]{5, CitationIndex.BASE_YEAR + 256, 5},     // 年份过大
+                new int[]{6, 0, 6},                                 // 没有日期的文章
+                new int[]{7, 2000, MAX_COUNT + 1});                 // 计数过大
+        assertEquals(1, index.articles());
+        assertEquals(7, index.entries());
+        assertEquals(1, index.count(5, 2000));
+        assertEquals(2, index.count(5, 1990));
+        assertEquals(3, index.count(2, 2000));
+        assertEquals(4, index.count(5, CitationIndex.BASE_YEAR - 1));
+        assertEquals(5, index.count(5, CitationIndex.BASE_YEAR + 256));
+        assertEquals(1 + 2 + 4 + 5, index.count(5));
+        assertEquals(6, index.count(6, 0));
+        assertEquals(MAX_COUNT + 1, index.count(7));
+    }
+
+    @Test
+    void addUpdatesArraysInPlace() {
+        CitationIndex index = build(new int[]{1, 2000, 3}, new int[]{1, 2001, 1});
+        index.add(1, 2000, 2);
+        index.add(1, 2001, -1);
+        assertEquals(5, index.count(1, 2000));
+        assertEquals(0, index.count(1, 2001));
+        assertEquals(5, index.count(1));
+        assertEquals(2, index.entries());
+    }
+
+    /**
+     * 数组中没有的 (文章, 年份) 以及会越出压缩范围的修改记入 extra。
+     */
+    @Test
+    void addSpillsToExtra() {
+        CitationIndex index = build(new int[]{1, 2000, 3}, new int[]{2, 2000, MAX_COUNT});
+        index.add(1, 2002, 4);
+        index.add(9, 2000, 1);
+        index.add(1, 2000, -5);
+        index.add(2, 2000, 1);
+        assertEquals(-2, index.count(1, 2000));
+        assertEquals(4, index.count(1, 2002));
+        assertEquals(2, index.count(1));
+        assertEquals(1, index.count(9));
+        assertEquals(MAX_COUNT + 1, index.count(2, 2000));
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir Path dir) throws IOException {
+        CitationIndex index = build(new int[]{1, 2000, 3}, new int[]{1, 2010, 2}, new int[]{4, 1850, 1},
+                new int[]{4, 1700, 6});
+        index.add(1, 2000, 1);
+        index.add(8, 2020, 2);
+        Path file = dir.resolve("citation.snapshot");
+        index.write(file, "v1");
+
+        CitationIndex read = CitationIndex.read(file, "v1");
+        assertNotNull(read);
+        assertEquals(index.articles(), read.articles());
+        assertEquals(index.entries(), read.entries());
+        assertEquals(4, read.count(1, 2000));
+        assertEquals(2, read.count(1, 2010));
+        assertEquals(6, read.count(1));
+        assertEquals(6, read.count(4, 1700));
+        assertEquals(7, read.count(4));
+        assertEquals(2, read.count(8, 2020));
+        assertEquals(index.memoryBytes(), read.memoryBytes());
+    }
+
+    @Test
+    void snapshotRejectsOtherVersionsAndTruncatedFiles(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("citation.snapshot");
+        build(new int[]{1, 2000, 3}, new int[]{2, 2001, 1}).write(file, "v1");
+        assertNull(CitationIndex.read(file, "v2"));
+
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = dir.resolve("truncated.snapshot");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+        assertNull(CitationIndex.read(truncated, "v1"));
+
+        Path garbage = dir.resolve("garbage.snapshot");
+        Files.write(garbage, new byte[]{0, 3, 'a', 'b', 'c'});
+        assertNull(CitationIndex.read(garbage, "v1"));
+    }
+}
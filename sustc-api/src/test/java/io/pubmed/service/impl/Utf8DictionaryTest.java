@@ -0,0 +1,100 @@
+package io.pubmed.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Utf8DictionaryTest {
+
+    @Test
+    void getAfterPutMissing() {
+        Utf8Dictionary dict = new Utf8Dictionary();
+        assertEquals(Utf8Dictionary.MISSING, dict.get("Cancer"));
+        dict.putMissing(7);
+        assertEquals(7, dict.get("Cancer"));
+        assertEquals(Utf8Dictionary.MISSING, dict.get("cancer"));
+        assertEquals(1, dict.size());
+    }
+
+    @Test
+    void putMissingRequiresMiss() {
+        Utf8Dictionary dict = new Utf8Dictionary();
+        assertThrows(IllegalStateException.class, () -> dict.putMissing(1));
+        dict.get("a");
+        dict.putMissing(1);
+        dict.get("a");
+        assertThrows(IllegalStateException.class, () -> dict.putMissing(2));
+    }
+
+    /**
+     * 字段带长度前缀，拼接后相同的字段组合、null 与空串都是不同的键。
+     */
+    @Test
+    void fieldBoundariesAreKept() {
+        Utf8Dictionary dict = new Utf8Dictionary();
+        String[][] keys = {
+                {"ab", "c", ""}, {"a", "bc", ""}, {"", "abc", ""},
+                {null, "", ""}, {"", null, ""}, {"", "", null}, {"", "", ""}, {null, null, null},
+        };
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(Utf8Dictionary.MISSING, dict.get(keys[i][0], keys[i][1], keys[i][2]), Arrays.toString(keys[i]));
+            dict.putMissing(i);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, dict.get(keys[i][0], keys[i][1], keys[i][2]), Arrays.toString(keys[i]));
+        }
+        assertEquals(Utf8Dictionary.MISSING, dict.get("abc"));
+    }
+
+    @Test
+    void nonAsciiKeys() {
+        Utf8Dictionary dict = new Utf8Dictionary();
+        String[] keys = {"肿瘤", "Müller", "🧬", "\uD83E", "\uDDEC", "x".repeat(300)};
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(Utf8Dictionary.MISSING, dict.get(keys[i]));
+            dict.putMissing(i);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, dict.get(keys[i]));
+        }
+    }
+
+    /**
+     * 从最小容量开始插入大量键：探测链互相碰撞，槽位、条目数组和键区都要多次扩容，扩容后仍能找到所有键。
+     */
+    @Test
+    void collisionsAndResize() {
+        Utf8Dictionary dict = new Utf8Dictionary(1);
+        long before = dict.memoryBytes();
+        int n = 50_000;
+        for (int i = 0; i < n; i++) {
+            assertEquals(Utf8Dictionary.MISSING, dict.get("author", Integer.toString(i), i % 3 == 0 ? null : "x"));
+            dict.putMissing(i);
+        }
+        assertEquals(n, dict.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, dict.get("author", Integer.toString(i), i % 3 == 0 ? null : "x"));
+        }
+        assertEquals(Utf8Dictionary.MISSING, dict.get("author", Integer.toString(n), "x"));
+        assertEquals(Utf8Dictionary.MISSING, dict.get("author", "0", "x"));
+        assertTrue(dict.memoryBytes() > before);
+    }
+
+    @Test
+    void putEncodedRestoresAndOverwrites() {
+        Utf8Dictionary source = new Utf8Dictionary();
+        source.get("k1", "k2", "k3");
+        byte[] encoded = Arrays.copyOf(source.lastKey(), source.lastKeyLength());
+
+        Utf8Dictionary dict = new Utf8Dictionary(1);
+        dict.putEncoded(encoded, 0, encoded.length, 5);
+        assertEquals(5, dict.get("k1", "k2", "k3"));
+        dict.putEncoded(encoded, 0, encoded.length, 9);
+        assertEquals(9, dict.get("k1", "k2", "k3"));
+        assertEquals(1, dict.size());
+    }
+}
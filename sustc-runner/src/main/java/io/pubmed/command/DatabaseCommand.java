@@ -8,6 +8,7 @@ import io.pubmed.dto.Author;
 import io.pubmed.dto.Journal;
 import io.pubmed.dto.JournalIssue;
 import io.pubmed.service.*;
+import io.pubmed.service.impl.ImportJobManager;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -42,6 +43,9 @@ public class DatabaseCommand {
     @Autowired
     private DatabaseService databaseService;
 
+    @Autowired
+    private ImportJobManager importJobManager;
+
     @Autowired
     private BenchmarkService benchmarkService;
 
@@ -75,6 +79,16 @@ public class DatabaseCommand {
         databaseService.truncate();
     }
 
+    @ShellMethod(key = "db snapshot dump", value = "Dump all imported tables into a binary snapshot file")
+    public void dumpSnapshot(String path) {
+        importJobManager.dumpSnapshot(path);
+    }
+
+    @ShellMethod(key = "db snapshot restore", value = "Replace all imported tables with a binary snapshot file")
+    public void restoreSnapshot(String path) {
+        importJobManager.restoreSnapshot(path);
+    }
+
     @ShellMethod(key = "db sum", value = "Demonstrate using DataSource")
     public Integer sum(int a, int b) {
         return databaseService.sum(a, b);